@@ -0,0 +1,87 @@
+package com.example.spring_postgres_blog.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link InvertedIndex} with a linear LOWER(col) LIKE '%q%' scan, which is what
+ * ProductRepository/PostRepository did per row before the index existed.
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InvertedIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "giày", "chạy", "bộ", "nam", "nữ", "đế", "êm", "thoáng", "khí", "áo", "quần", "tất", "balo",
+            "đồng", "hồ", "gps", "trail", "road", "marathon", "nike", "adidas", "asics", "hoka", "saucony",
+            "nhẹ", "bền", "chống", "nước", "phản", "quang", "size", "đen", "trắng", "xanh", "đỏ", "vàng" };
+
+    private static final int LIMIT = 20;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int documents;
+
+    @Param({ "giay chay", "marat", "đồng hồ gps" })
+    public String query;
+
+    private InvertedIndex index;
+    private List<String[]> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new InvertedIndex();
+        rows = new ArrayList<>(documents);
+        for (int id = 1; id <= documents; id++) {
+            String title = sentence(random, 4);
+            String description = sentence(random, 20);
+            index.put(id, title, description);
+            rows.add(new String[] { title, description });
+        }
+    }
+
+    @Benchmark
+    public long[] invertedIndex() {
+        return index.search(query, LIMIT);
+    }
+
+    @Benchmark
+    public int likeScan() {
+        // Không có index: mọi dòng đều phải LOWER + LIKE '%q%'
+        String needle = query.toLowerCase(Locale.ROOT);
+        int matches = 0;
+        for (String[] row : rows) {
+            if (row[0].toLowerCase(Locale.ROOT).contains(needle)
+                    || row[1].toLowerCase(Locale.ROOT).contains(needle)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.spring_postgres_blog.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add-to-cart under load, 8 clients on their own connections: the statements sent before (find user,
+ * find product, find the cart line, then UPDATE or INSERT) against the single upsert sent now.
+ * Each client keeps adding to a small set of products, so both the insert and the update path are hit.
+ * <p>
+ * Needs a Postgres migrated by Flyway: TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class CartAddBenchmark {
+
+    private static final int PRODUCTS = 20;
+
+    private Connection connection;
+    private long userId;
+    private final long[] productIds = new long[PRODUCTS];
+    private int next;
+    private String tag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getenv("TEST_POSTGRES_URL");
+        if (url == null) {
+            throw new IllegalStateException("Set TEST_POSTGRES_URL to a Postgres database migrated by Flyway");
+        }
+        connection = DriverManager.getConnection(url,
+                System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"),
+                System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+        connection.setAutoCommit(false);
+
+        tag = "bench-" + System.nanoTime() + "-" + Thread.currentThread().threadId();
+        userId = queryLong("INSERT INTO users (username, email, password) VALUES (?, ?, 'x') RETURNING id",
+                tag, tag + "@example.com");
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIds[i] = queryLong("INSERT INTO products (slug, title, price) VALUES (?, ?, 100) RETURNING id",
+                    tag + "-" + i, tag);
+        }
+        connection.commit();
+    }
+
+    // Giỏ rỗng lại sau mỗi vòng để nhánh INSERT cũng được đo, không chỉ UPDATE
+    @Setup(Level.Iteration)
+    public void emptyCart() throws SQLException {
+        execute("DELETE FROM cart_items WHERE user_id = " + userId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        execute("DELETE FROM cart_items WHERE user_id = " + userId);
+        execute("DELETE FROM products WHERE title = '" + tag + "'");
+        execute("DELETE FROM users WHERE id = " + userId);
+        connection.close();
+    }
+
+    @Benchmark
+    public void lookupThenWrite() throws SQLException {
+        long productId = nextProduct();
+        queryLong("SELECT id FROM users WHERE id = ?", userId);
+        queryLong("SELECT id FROM products WHERE id = ?", productId);
+        Long cartItemId = null;
+        try (PreparedStatement find = connection.prepareStatement(
+                "SELECT id FROM cart_items WHERE user_id = ? AND product_id = ?")) {
+            find.setLong(1, userId);
+            find.setLong(2, productId);
+            try (ResultSet rs = find.executeQuery()) {
+                if (rs.next()) {
+                    cartItemId = rs.getLong(1);
+                }
+            }
+        }
+        if (cartItemId != null) {
+            update("UPDATE cart_items SET quantity = quantity + 1 WHERE id = ?", cartItemId);
+        } else {
+            update("INSERT INTO cart_items (user_id, product_id, quantity) VALUES (?, ?, 1)", userId, productId);
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public void upsert() throws SQLException {
+        update("""
+                INSERT INTO cart_items (user_id, product_id, quantity) VALUES (?, ?, 1)
+                ON CONFLICT (user_id, product_id)
+                DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+                """, userId, nextProduct());
+        connection.commit();
+    }
+
+    private long nextProduct() {
+        long productId = productIds[next];
+        next = (next + 1) % PRODUCTS;
+        return productId;
+    }
+
+    private long queryLong(String sql, Object... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void update(String sql, Object... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        connection.commit();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.spring_postgres_blog.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout write path by cart size: the statements Hibernate sent before (IDENTITY inserts with one
+ * round trip per row, deleteAll deleting cart rows one by one) against what it sends now (ids from
+ * the pooled sequences, one JDBC batch for the items, one bulk DELETE of the cart).
+ * <p>
+ * Needs a Postgres migrated by Flyway: TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CheckoutWriteBenchmark {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Param({ "1", "10", "50" })
+    public int cartSize;
+
+    private Connection connection;
+    private long userId;
+    private final List<Long> productIds = new ArrayList<>();
+    private final List<Long> cartItemIds = new ArrayList<>();
+    private final IdPool orderIds = new IdPool("orders_seq");
+    private final IdPool orderItemIds = new IdPool("order_items_seq");
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getenv("TEST_POSTGRES_URL");
+        if (url == null) {
+            throw new IllegalStateException("Set TEST_POSTGRES_URL to a Postgres database migrated by Flyway");
+        }
+        connection = DriverManager.getConnection(url,
+                System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"),
+                System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+        connection.setAutoCommit(false);
+
+        String tag = "bench-" + System.nanoTime();
+        userId = insertReturningId("INSERT INTO users (username, email, password) VALUES (?, ?, 'x') RETURNING id",
+                tag, tag + "@example.com");
+        for (int i = 0; i < cartSize; i++) {
+            productIds.add(insertReturningId(
+                    "INSERT INTO products (slug, title, price) VALUES (?, ?, 100) RETURNING id", tag + "-" + i, tag));
+        }
+        connection.commit();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() throws SQLException {
+        cartItemIds.clear();
+        for (Long productId : productIds) {
+            cartItemIds.add(insertReturningId(
+                    "INSERT INTO cart_items (user_id, product_id, quantity) VALUES (?, ?, 1) RETURNING id",
+                    userId, productId));
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM order_items WHERE order_id IN (SELECT id FROM orders WHERE user_id = "
+                    + userId + ")");
+            statement.execute("DELETE FROM orders WHERE user_id = " + userId);
+            statement.execute("DELETE FROM cart_items WHERE user_id = " + userId);
+            statement.execute("DELETE FROM products WHERE title = (SELECT username FROM users WHERE id = "
+                    + userId + ")");
+            statement.execute("DELETE FROM users WHERE id = " + userId);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    public long rowByRow() throws SQLException {
+        long orderId = insertReturningId("""
+                INSERT INTO orders (id, user_id, status, total_amount, created_at)
+                VALUES (nextval('orders_seq'), ?, 'PENDING', ?, now()) RETURNING id
+                """, userId, 100.0 * cartSize);
+        for (Long productId : productIds) {
+            insertReturningId("""
+                    INSERT INTO order_items (id, order_id, product_id, quantity, price)
+                    VALUES (nextval('order_items_seq'), ?, ?, 1, 100) RETURNING id
+                    """, orderId, productId);
+        }
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM cart_items WHERE id = ?")) {
+            for (Long cartItemId : cartItemIds) {
+                delete.setLong(1, cartItemId);
+                delete.executeUpdate();
+            }
+        }
+        connection.commit();
+        return orderId;
+    }
+
+    @Benchmark
+    public long batched() throws SQLException {
+        long orderId = orderIds.next();
+        try (PreparedStatement order = connection.prepareStatement("""
+                INSERT INTO orders (id, user_id, status, total_amount, created_at)
+                VALUES (?, ?, 'PENDING', ?, now())
+                """)) {
+            order.setLong(1, orderId);
+            order.setLong(2, userId);
+            order.setDouble(3, 100.0 * cartSize);
+            order.executeUpdate();
+        }
+        try (PreparedStatement items = connection.prepareStatement("""
+                INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES (?, ?, ?, 1, 100)
+                """)) {
+            for (Long productId : productIds) {
+                items.setLong(1, orderItemIds.next());
+                items.setLong(2, orderId);
+                items.setLong(3, productId);
+                items.addBatch();
+            }
+            items.executeBatch();
+        }
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM cart_items WHERE user_id = ?")) {
+            delete.setLong(1, userId);
+            delete.executeUpdate();
+        }
+        connection.commit();
+        return orderId;
+    }
+
+    private long insertReturningId(String sql, Object... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    // Giống optimizer "pooled" của Hibernate: một lần nextval cấp ALLOCATION_SIZE id
+    private final class IdPool {
+        private final String sequence;
+        private long next;
+        private long limit = -1;
+
+        IdPool(String sequence) {
+            this.sequence = sequence;
+        }
+
+        long next() throws SQLException {
+            if (next > limit) {
+                long hi = insertReturningId("SELECT nextval('" + sequence + "')");
+                next = hi - ALLOCATION_SIZE + 1;
+                limit = hi;
+            }
+            return next++;
+        }
+    }
+}
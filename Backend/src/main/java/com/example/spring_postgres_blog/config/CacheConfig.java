@@ -0,0 +1,60 @@
+package com.example.spring_postgres_blog.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Map;
+
+/**
+ * Local Caffeine caches for hot storefront reads.
+ * Each cache has its own size/TTL spec, overridable with app.cache.&lt;name&gt;.spec
+ * (Caffeine spec syntax, e.g. "maximumSize=500,expireAfterWrite=5m").
+ * recordStats is always on so actuator exports cache.gets / cache.evictions per cache.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCT_BY_SLUG = "productBySlug";
+    public static final String TOP_DISCOUNT_PRODUCTS = "topDiscountProducts";
+    public static final String DISCOUNT_PRODUCTS = "discountProducts";
+    public static final String POST_BY_SLUG = "postBySlug";
+    public static final String NEWEST_POSTS = "newestPosts";
+    public static final String TOP_POST = "topPost";
+    // Phiên bản (count + max updated_at) của từng bảng, dùng làm ETag cho danh sách
+    public static final String COLLECTION_VERSIONS = "collectionVersions";
+    // (userId:Idempotency-Key) -> orderId của checkout đã commit, không bao giờ đổi nên không cần invalidation
+    public static final String IDEMPOTENCY_KEYS = "idempotencyKeys";
+    // Giỏ hàng theo userId, bị xóa qua EntityChangeEvent.CART sau mỗi lần ghi (kể cả từ node khác)
+    public static final String CART_ITEMS = "cartItems";
+    public static final String CART_TOTALS = "cartTotals";
+
+    private static final Map<String, String> DEFAULT_SPECS = Map.of(
+            PRODUCT_BY_SLUG, "maximumSize=5000,expireAfterWrite=10m",
+            TOP_DISCOUNT_PRODUCTS, "maximumSize=1,expireAfterWrite=5m",
+            DISCOUNT_PRODUCTS, "maximumSize=1,expireAfterWrite=5m",
+            POST_BY_SLUG, "maximumSize=1000,expireAfterWrite=10m",
+            NEWEST_POSTS, "maximumSize=1,expireAfterWrite=5m",
+            TOP_POST, "maximumSize=1,expireAfterWrite=5m",
+            COLLECTION_VERSIONS, "maximumSize=16,expireAfterWrite=30s",
+            IDEMPOTENCY_KEYS, "maximumSize=10000,expireAfterWrite=1h",
+            CART_ITEMS, "maximumSize=10000,expireAfterWrite=10m",
+            CART_TOTALS, "maximumSize=50000,expireAfterWrite=10m");
+
+    @Bean
+    public CacheManager cacheManager(Environment environment) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Không cho tạo cache ngoài danh sách, tránh cache không giới hạn kích thước
+        cacheManager.setCacheNames(DEFAULT_SPECS.keySet());
+        DEFAULT_SPECS.forEach((name, defaultSpec) -> {
+            String spec = environment.getProperty("app.cache." + name + ".spec", defaultSpec);
+            cacheManager.registerCustomCache(name, Caffeine.from(spec).recordStats().build());
+        });
+        return cacheManager;
+    }
+}
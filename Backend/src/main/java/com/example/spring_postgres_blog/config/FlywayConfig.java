@@ -0,0 +1,22 @@
+package com.example.spring_postgres_blog.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Databases created by Hibernate before the migrations existed contain at least V1, the original
+ * schema: they are baselined at version 1 on first start and get V1.1 onwards, which only add what
+ * is still missing. An empty database runs everything.
+ */
+@Configuration
+public class FlywayConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer baselineCustomizer(
+            @Value("${spring.flyway.baseline-on-migrate:true}") boolean baselineOnMigrate,
+            @Value("${spring.flyway.baseline-version:1}") String baselineVersion) {
+        return configuration -> configuration.baselineOnMigrate(baselineOnMigrate).baselineVersion(baselineVersion);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.spring_postgres_blog.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate defaults that application.properties does not have to repeat.
+ * Batch fetching turns any lazy association or collection that is not in an entity graph into
+ * one IN (...) query per batch instead of one query per row. A value set through
+ * spring.jpa.properties.hibernate.default_batch_fetch_size still wins.
+ * <p>
+ * JDBC batching lets the inserts of entities with sequence ids (an order and its items) go out as
+ * one batch per table; IDENTITY ids are never batched because each insert must return its key.
+ * <p>
+ * The schema belongs to the Flyway migrations in db/migration, so Hibernate only validates the
+ * mappings against it unless spring.jpa.hibernate.ddl-auto says otherwise.
+ */
+@Configuration
+public class JpaConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer batchFetchCustomizer(
+            @Value("${app.jpa.batch-fetch-size:50}") int batchFetchSize) {
+        return properties -> properties.putIfAbsent(AvailableSettings.DEFAULT_BATCH_FETCH_SIZE, batchFetchSize);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchCustomizer(@Value("${app.jpa.jdbc-batch-size:50}") int batchSize) {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer schemaValidationCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.HBM2DDL_AUTO, "validate");
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.spring_postgres_blog.config;
+
+import com.example.spring_postgres_blog.service.ViewCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One {@link ViewCounter} per kind of page with a view count: posts (posts.views + post_views)
+ * and products (products.views + product_views). Inject them by bean name with @Qualifier.
+ */
+@Configuration
+public class ViewCounterConfig {
+    public static final String POST_VIEWS = "postViewCounter";
+    public static final String PRODUCT_VIEWS = "productViewCounter";
+
+    @Bean(POST_VIEWS)
+    public ViewCounter postViewCounter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        return new ViewCounter("posts", "post_views", "post_id", jdbcTemplate, transactionTemplate, meterRegistry);
+    }
+
+    @Bean(PRODUCT_VIEWS)
+    public ViewCounter productViewCounter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        return new ViewCounter("products", "product_views", "product_id", jdbcTemplate, transactionTemplate,
+                meterRegistry);
+    }
+}
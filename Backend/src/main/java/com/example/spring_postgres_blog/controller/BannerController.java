@@ -1,11 +1,15 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.Banner;
 import com.example.spring_postgres_blog.service.BannerService;
+import com.example.spring_postgres_blog.service.CollectionVersionService;
+import com.example.spring_postgres_blog.util.ETagUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -18,8 +22,15 @@ public class BannerController {
     @Autowired
     private BannerService bannerService;
 
+    @Autowired
+    private CollectionVersionService collectionVersionService;
+
     @GetMapping
-    public ResponseEntity<List<Banner>> getAllBanners() {
+    public ResponseEntity<List<Banner>> getAllBanners(WebRequest request) {
+        if (ETagUtil.checkNotModified(request, EntityChangeEvent.BANNER,
+                collectionVersionService.getVersion(EntityChangeEvent.BANNER))) {
+            return null;
+        }
         return ResponseEntity.ok(bannerService.getAllBanners());
     }
 
@@ -1,5 +1,7 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.dto.CartBulkRequest;
+import com.example.spring_postgres_blog.dto.CartTotals;
 import com.example.spring_postgres_blog.model.CartItem;
 import com.example.spring_postgres_blog.service.CartService;
 import org.springframework.http.ResponseEntity;
@@ -39,6 +41,17 @@ public class CartController {
         }
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<?> addAllToCart(@RequestBody CartBulkRequest request) {
+        try {
+            List<CartItem> cartItems = cartService.addAllToCart(request.userId(), request.items());
+            return ResponseEntity.ok(cartItems);
+        } catch (Exception e) {
+            logger.error("Error adding items to cart", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{userId}")
     public ResponseEntity<List<CartItem>> getUserCart(@PathVariable Long userId) {
         List<CartItem> cartItems = cartService.getCartItemsByUserId(userId);
@@ -70,7 +83,12 @@ public class CartController {
 
     @GetMapping("/{userId}/count")
     public ResponseEntity<Integer> getCartCount(@PathVariable Long userId) {
-        int count = cartService.getCartItemsByUserId(userId).size();
-        return ResponseEntity.ok(count);
+        long count = cartService.getTotals(userId).getCount();
+        return ResponseEntity.ok((int) count);
+    }
+
+    @GetMapping("/{userId}/totals")
+    public ResponseEntity<CartTotals> getCartTotals(@PathVariable Long userId) {
+        return ResponseEntity.ok(cartService.getTotals(userId));
     }
 }
\ No newline at end of file
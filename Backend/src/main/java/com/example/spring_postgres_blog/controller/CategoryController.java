@@ -1,9 +1,13 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.Category;
 import com.example.spring_postgres_blog.service.CategoryService;
+import com.example.spring_postgres_blog.service.CollectionVersionService;
+import com.example.spring_postgres_blog.util.ETagUtil;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -13,22 +17,32 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CollectionVersionService collectionVersionService;
 
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CollectionVersionService collectionVersionService) {
         this.categoryService = categoryService;
+        this.collectionVersionService = collectionVersionService;
     }
 
     // GET all
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
+    public ResponseEntity<List<Category>> getAllCategories(WebRequest request) {
+        if (ETagUtil.checkNotModified(request, EntityChangeEvent.CATEGORY,
+                collectionVersionService.getVersion(EntityChangeEvent.CATEGORY))) {
+            return null;
+        }
         return ResponseEntity.ok(categoryService.getAllCategories());
     }
 
     // GET detail
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategoryDetail(@PathVariable Long id) {
+    public ResponseEntity<Category> getCategoryDetail(@PathVariable Long id, WebRequest request) {
         try {
             Category category = categoryService.getCategoryById(id);
+            if (ETagUtil.checkNotModified(request, EntityChangeEvent.CATEGORY, category.getId(),
+                    category.getUpdatedAt())) {
+                return null;
+            }
             return ResponseEntity.ok(category);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
@@ -1,10 +1,14 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.Information;
+import com.example.spring_postgres_blog.service.CollectionVersionService;
 import com.example.spring_postgres_blog.service.InformationService;
+import com.example.spring_postgres_blog.util.ETagUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,8 +20,15 @@ public class InformationController {
     @Autowired
     private InformationService informationService;
 
+    @Autowired
+    private CollectionVersionService collectionVersionService;
+
     @GetMapping
-    public ResponseEntity<List<Information>> getAllInformation() {
+    public ResponseEntity<List<Information>> getAllInformation(WebRequest request) {
+        if (ETagUtil.checkNotModified(request, EntityChangeEvent.INFORMATION,
+                collectionVersionService.getVersion(EntityChangeEvent.INFORMATION))) {
+            return null;
+        }
         return ResponseEntity.ok(informationService.getAllInformation());
     }
 
@@ -1,11 +1,15 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.dto.CursorPage;
 import com.example.spring_postgres_blog.model.CheckoutRequest;
 import com.example.spring_postgres_blog.model.Order;
+import com.example.spring_postgres_blog.service.InsufficientStockException;
 import com.example.spring_postgres_blog.service.OrderService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = { "${app.frontend.url}" })
 @RestController
@@ -23,17 +27,45 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Trang admin: ?status=PENDING&userId=&from=2025-01-01&to=2025-01-31&q=&size=20&cursor=<nextCursor>
+    @GetMapping("/page")
+    public ResponseEntity<?> getOrdersPage(@RequestParam(required = false) String status,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            CursorPage<Order> page = orderService.getOrdersPage(status, userId, from, to, q, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/checkout/{userId}")
-    public ResponseEntity<Order> checkout(
+    public ResponseEntity<?> checkout(
             @PathVariable Long userId,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody CheckoutRequest request) {
-        System.out.println("Creating order for user: " + userId);
-        return ResponseEntity.ok(orderService.createOrderFromCart(
-                userId,
-                request.getFullName(),
-                request.getEmail(),
-                request.getPhone(),
-                request.getShippingAddress()));
+        try {
+            return ResponseEntity.ok(orderService.checkout(
+                    userId,
+                    idempotencyKey,
+                    request.getFullName(),
+                    request.getEmail(),
+                    request.getPhone(),
+                    request.getShippingAddress()));
+        } catch (InsufficientStockException e) {
+            // 409 kèm từng dòng thiếu hàng để giỏ hàng hiển thị số lượng còn lại
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "shortages", e.getShortages()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/user/{userId}")
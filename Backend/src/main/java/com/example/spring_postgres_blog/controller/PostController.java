@@ -1,15 +1,23 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.dto.PostSummary;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.Post;
 import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.service.CollectionVersionService;
 import com.example.spring_postgres_blog.service.PostService;
+import com.example.spring_postgres_blog.util.ETagUtil;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @CrossOrigin(origins = { "${app.frontend.url}" })
 @RestController
@@ -17,38 +25,60 @@ import java.util.List;
 public class PostController {
 
     private final PostService postService;
+    private final CollectionVersionService collectionVersionService;
 
-    public PostController(PostService postService) {
+    public PostController(PostService postService, CollectionVersionService collectionVersionService) {
         this.postService = postService;
+        this.collectionVersionService = collectionVersionService;
     }
 
     @GetMapping
-    public List<Post> getAllPosts() {
-        return postService.getAllPosts();
+    public ResponseEntity<List<PostSummary>> getAllPosts(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(postService.getAllPosts());
+    }
+
+    private boolean notModified(WebRequest request) {
+        return ETagUtil.checkNotModified(request, EntityChangeEvent.POST,
+                collectionVersionService.getVersion(EntityChangeEvent.POST));
     }
 
     @GetMapping("/search")
-    public List<Post> searchPosts(@RequestParam(required = false) String q,
+    public List<PostSummary> searchPosts(@RequestParam(required = false) String q,
             @RequestParam(required = false) String category) {
         return postService.searchPosts(q, category);
     }
 
     @GetMapping("/category/{category}")
-    public List<Post> getPostsByCategory(@PathVariable String category) {
-        return postService.getPostsByCategory(category);
+    public ResponseEntity<List<PostSummary>> getPostsByCategory(@PathVariable String category, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(postService.getPostsByCategory(category));
     }
 
     @GetMapping("/{slug}")
-    public ResponseEntity<Post> getPostDetail(@PathVariable String slug) {
-        return postService.getPostBySlug(slug)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<Post> getPostDetail(@PathVariable String slug, WebRequest request) {
+        Optional<Post> post = postService.getPostBySlug(slug);
+        if (post.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (ETagUtil.checkNotModified(request, EntityChangeEvent.POST, post.get().getId(),
+                post.get().getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok(post.get());
     }
 
     @GetMapping("/by-ids")
-    public ResponseEntity<List<Post>> getPostsByIds(@RequestParam String ids) {
+    public ResponseEntity<List<PostSummary>> getPostsByIds(@RequestParam String ids, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         try {
-            List<Post> posts = postService.getPostByIds(ids);
+            List<PostSummary> posts = postService.getPostByIds(ids);
             return ResponseEntity.ok(posts);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
@@ -56,8 +86,11 @@ public class PostController {
     }
 
     @GetMapping("/newest")
-    public List<Post> getPostsNewest() {
-        return postService.getPostsNewest();
+    public ResponseEntity<List<PostSummary>> getPostsNewest(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(postService.getPostsNewest());
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -136,12 +169,22 @@ public class PostController {
     }
 
     @GetMapping("/top1")
-    public Post getTop1Blog() {
-        return postService.getTop1Blog();
+    public ResponseEntity<PostSummary> getTop1Blog(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return ResponseEntity.ok(postService.getTop1Blog());
     }
 
     @PutMapping("/{slug}/view")
-    public Post increaseView(@PathVariable String slug) {
-        return postService.increaseView(slug);
+    public ResponseEntity<?> increaseView(@PathVariable String slug) {
+        try {
+            postService.increaseView(slug);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "View recorded"));
     }
 }
\ No newline at end of file
@@ -1,12 +1,18 @@
 package com.example.spring_postgres_blog.controller;
 
+import com.example.spring_postgres_blog.dto.CursorPage;
+import com.example.spring_postgres_blog.dto.ProductCard;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.Product;
-import com.example.spring_postgres_blog.service.CloudinaryService;
+import com.example.spring_postgres_blog.search.SuggestionTrie;
+import com.example.spring_postgres_blog.service.CollectionVersionService;
 import com.example.spring_postgres_blog.service.ProductService;
+import com.example.spring_postgres_blog.util.ETagUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -22,23 +28,80 @@ public class ProductController {
     private ProductService productService;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private CollectionVersionService collectionVersionService;
 
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<List<ProductCard>> getAllProducts(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return ResponseEntity.ok(productService.getAllProducts());
     }
 
+    // Mọi danh sách sản phẩm dùng chung một ETag theo phiên bản bảng products
+    private boolean notModified(WebRequest request) {
+        return ETagUtil.checkNotModified(request, EntityChangeEvent.PRODUCT,
+                collectionVersionService.getVersion(EntityChangeEvent.PRODUCT));
+    }
+
     @GetMapping("/search")
-    public List<Product> searchProduct(@RequestParam(required = false) String q,
+    public List<ProductCard> searchProduct(@RequestParam(required = false) String q,
             @RequestParam(required = false) String category) {
         return productService.searchProduct(q, category);
     }
 
+    // Phân trang theo cursor: ?sort=newest|discount&size=20&cursor=<nextCursor của trang trước>
+    @GetMapping("/page")
+    public ResponseEntity<?> getProductsPage(@RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return productsPage(sort, null, null, cursor, size);
+    }
+
+    @GetMapping("/search/page")
+    public ResponseEntity<?> searchProductPage(@RequestParam(required = false) String q,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return productsPage(sort, category, q, cursor, size);
+    }
+
+    @GetMapping("/category/{category}/page")
+    public ResponseEntity<?> getProductsByCategoryPage(@PathVariable String category,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return productsPage(sort, category, null, cursor, size);
+    }
+
+    private ResponseEntity<?> productsPage(String sort, String category, String query, String cursor,
+            Integer size) {
+        try {
+            CursorPage<ProductCard> page = productService.getProductsPage(sort, category, query, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Gợi ý nhanh cho ô tìm kiếm, chỉ trả title + slug
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionTrie.Suggestion>> suggest(@RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        if (q == null || q.isBlank()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(productService.suggest(q, limit));
+    }
+
     @GetMapping("/by-ids")
-    public ResponseEntity<List<Product>> getProductsByIds(@RequestParam String ids) {
+    public ResponseEntity<List<ProductCard>> getProductsByIds(@RequestParam String ids, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         try {
-            List<Product> products = productService.getProductsByIds(ids);
+            List<ProductCard> products = productService.getProductsByIds(ids);
             return ResponseEntity.ok(products);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
@@ -46,15 +109,25 @@ public class ProductController {
     }
 
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
+    public ResponseEntity<List<ProductCard>> getProductsByCategory(@PathVariable String category,
+            WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return ResponseEntity.ok(productService.getProductsByCategory(category));
     }
 
     @GetMapping("/detail/{slug}")
-    public ResponseEntity<Product> getProductDetail(@PathVariable String slug) {
-        return productService.getProductBySlug(slug)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<Product> getProductDetail(@PathVariable String slug, WebRequest request) {
+        Optional<Product> product = productService.getProductBySlug(slug);
+        if (product.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (ETagUtil.checkNotModified(request, EntityChangeEvent.PRODUCT, product.get().getId(),
+                product.get().getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok(product.get());
     }
 
     @PostMapping(value = "/create", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -79,14 +152,7 @@ public class ProductController {
         product.setCategory(category);
         product.setUrl(slug);
 
-        // Handle image upload if provided
-        if (image != null && !image.isEmpty()) {
-            Map uploadResult = cloudinaryService.upload(image);
-            product.setImageUrl((String) uploadResult.get("url"));
-            product.setImagePublicId((String) uploadResult.get("public_id"));
-        }
-
-        Product result = productService.createProduct(product);
+        Product result = productService.createProduct(product, image);
         return ResponseEntity.status(201).body(result);
     }
 
@@ -113,20 +179,7 @@ public class ProductController {
             updatedProduct.setCategory(category);
             updatedProduct.setUrl(slugParam);
 
-            // Handle image upload if provided
-            if (image != null && !image.isEmpty()) {
-                // Get existing product to delete old image if exists
-                Optional<Product> existingProduct = productService.getProductBySlug(slug);
-                if (existingProduct.isPresent() && existingProduct.get().getImagePublicId() != null) {
-                    cloudinaryService.delete(existingProduct.get().getImagePublicId());
-                }
-
-                Map uploadResult = cloudinaryService.upload(image);
-                updatedProduct.setImageUrl((String) uploadResult.get("url"));
-                updatedProduct.setImagePublicId((String) uploadResult.get("public_id"));
-            }
-
-            Product product = productService.updateProduct(slug, updatedProduct);
+            Product product = productService.updateProduct(slug, updatedProduct, image);
             return ResponseEntity.ok(product);
         } catch (RuntimeException e) {
             return ResponseEntity.status(404).body(e.getMessage());
@@ -137,29 +190,38 @@ public class ProductController {
 
     @DeleteMapping("/delete/{slug}")
     public ResponseEntity<?> deleteProduct(@PathVariable String slug) {
+        // Ảnh được xóa bất đồng bộ qua outbox, không gọi kho ảnh trong request
+        if (productService.deleteProductBySlug(slug)) {
+            return ResponseEntity.ok("Product deleted successfully");
+        }
+        return ResponseEntity.status(404).body("Product not found");
+    }
+
+    @PutMapping("/{slug}/view")
+    public ResponseEntity<?> increaseView(@PathVariable String slug) {
         try {
-            // Get product to delete image from Cloudinary
-            Optional<Product> product = productService.getProductBySlug(slug);
-            if (product.isPresent()) {
-                if (product.get().getImagePublicId() != null) {
-                    cloudinaryService.delete(product.get().getImagePublicId());
-                }
-                productService.deleteProductBySlug(slug);
-                return ResponseEntity.ok("Product deleted successfully");
-            }
-            return ResponseEntity.status(404).body("Product not found");
-        } catch (IOException e) {
-            return ResponseEntity.status(500).body("Error deleting product: " + e.getMessage());
+            productService.increaseView(slug);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
         }
+        return ResponseEntity.accepted().body(Map.of("message", "View recorded"));
     }
 
     @GetMapping("/top2product")
-    public ResponseEntity<List<Product>> getTop2Discount() {
+    public ResponseEntity<List<ProductCard>> getTop2Discount(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return ResponseEntity.ok(productService.getTop2DiscountProducts());
     }
 
     @GetMapping("/getdiscountproducts")
-    public ResponseEntity<List<Product>> getDiscountProducts() {
+    public ResponseEntity<List<ProductCard>> getDiscountProducts(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return ResponseEntity.ok(productService.getDiscountProducts());
     }
 }
\ No newline at end of file
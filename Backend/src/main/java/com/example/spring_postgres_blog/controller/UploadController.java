@@ -0,0 +1,41 @@
+package com.example.spring_postgres_blog.controller;
+
+import com.example.spring_postgres_blog.dto.UploadConfirmRequest;
+import com.example.spring_postgres_blog.service.DirectUploadService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@CrossOrigin(origins = { "${app.frontend.url}" })
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    private final DirectUploadService directUploadService;
+
+    public UploadController(DirectUploadService directUploadService) {
+        this.directUploadService = directUploadService;
+    }
+
+    @PostMapping("/sign")
+    public ResponseEntity<?> sign(@RequestBody Map<String, String> request) {
+        try {
+            return ResponseEntity.ok(directUploadService.sign(request.get("target")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/confirm")
+    public ResponseEntity<?> confirm(@RequestBody UploadConfirmRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(directUploadService.confirm(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.util.List;
+
+// Body của POST /api/cart/bulk: gộp nhiều dòng (ví dụ giỏ khách vãng lai) vào giỏ của user trong một request
+public record CartBulkRequest(Long userId, List<Line> items) {
+
+    public record Line(Long productId, Integer quantity) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.spring_postgres_blog.dto;
+
+// Projection cho badge giỏ hàng: số dòng và tổng số lượng, không nạp CartItem/Product
+public interface CartTotals {
+    long getCount();
+
+    long getQuantity();
+}
@@ -0,0 +1,10 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.time.LocalDateTime;
+
+// Projection COUNT + MAX(updated_at) của một bảng, dùng làm ETag/Last-Modified cho danh sách
+public interface CollectionVersion {
+    long getCount();
+
+    LocalDateTime getLastModified();
+}
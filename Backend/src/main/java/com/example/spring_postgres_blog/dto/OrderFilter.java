@@ -0,0 +1,13 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional filters for the admin order listing; a null field is not filtered on.
+ *
+ * @param from  inclusive lower bound on createdAt
+ * @param to    exclusive upper bound on createdAt
+ * @param query case-insensitive substring of email or full name
+ */
+public record OrderFilter(String status, Long userId, LocalDateTime from, LocalDateTime to, String query) {
+}
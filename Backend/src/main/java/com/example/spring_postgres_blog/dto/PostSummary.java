@@ -0,0 +1,35 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.time.LocalDateTime;
+
+// Projection cho danh sách/thẻ bài viết: không có content (TEXT) và viewsPerDay.
+// Tên getter trùng với entity Post nên JSON giữ nguyên tên trường.
+public interface PostSummary {
+    Long getId();
+
+    String getTitle();
+
+    String getDescription();
+
+    String getCategory();
+
+    Integer getViews();
+
+    String getImageUrl();
+
+    String getImageSrcset();
+
+    String getImageSrcsetWebp();
+
+    LocalDateTime getCreatedAt();
+
+    String getSlug();
+
+    String getMetaTitle();
+
+    String getMetaDescription();
+
+    String getMetaKeywords();
+
+    String getMetaURL();
+}
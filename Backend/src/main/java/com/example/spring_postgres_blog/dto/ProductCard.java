@@ -0,0 +1,38 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.time.LocalDateTime;
+
+// Projection cho danh sách/thẻ sản phẩm: không đọc search_text, image_public_id.
+// Tên getter trùng với entity Product nên JSON giữ nguyên tên trường.
+public interface ProductCard {
+    Long getId();
+
+    String getSlug();
+
+    String getTitle();
+
+    Double getPrice();
+
+    String getDescription();
+
+    Double getDiscount();
+
+    Integer getViews();
+
+    Double getRating();
+
+    String getUrl();
+
+    String getCategory();
+
+    String getImageUrl();
+
+    // srcset của ảnh (định dạng gốc và WebP), null nếu chỉ có imageUrl
+    String getImageSrcset();
+
+    String getImageSrcsetWebp();
+
+    Integer getStock();
+
+    LocalDateTime getCreatedAt();
+}
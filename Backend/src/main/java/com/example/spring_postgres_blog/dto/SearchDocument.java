@@ -0,0 +1,12 @@
+package com.example.spring_postgres_blog.dto;
+
+// Projection chỉ gồm các cột cần cho index tìm kiếm trong bộ nhớ (không load content/viewsPerDay)
+public interface SearchDocument {
+    Long getId();
+
+    String getTitle();
+
+    String getDescription();
+
+    String getCategory();
+}
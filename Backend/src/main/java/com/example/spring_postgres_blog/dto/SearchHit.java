@@ -0,0 +1,8 @@
+package com.example.spring_postgres_blog.dto;
+
+// Projection cho kết quả full-text search: id và điểm liên quan (ts_rank)
+public interface SearchHit {
+    Long getId();
+
+    Float getRank();
+}
@@ -0,0 +1,9 @@
+package com.example.spring_postgres_blog.dto;
+
+/**
+ * A cart line that could not be reserved at checkout.
+ *
+ * @param available stock left when the checkout ran, 0 if the product no longer exists
+ */
+public record StockShortage(Long productId, String title, int requested, int available) {
+}
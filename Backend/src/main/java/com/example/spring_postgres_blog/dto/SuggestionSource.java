@@ -0,0 +1,14 @@
+package com.example.spring_postgres_blog.dto;
+
+// Projection cho dựng trie gợi ý tìm kiếm, chỉ các cột cần để hiển thị và tính trọng số
+public interface SuggestionSource {
+    Long getId();
+
+    String getSlug();
+
+    String getTitle();
+
+    Integer getViews();
+
+    Double getDiscount();
+}
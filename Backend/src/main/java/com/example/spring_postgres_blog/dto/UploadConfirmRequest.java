@@ -0,0 +1,6 @@
+package com.example.spring_postgres_blog.dto;
+
+// Body của POST /api/uploads/confirm: chép nguyên public_id, version, signature từ phản hồi upload.
+// slug chỉ cần cho product/post (gắn ảnh vào bản ghi có sẵn); banner/asset được tạo mới từ ảnh
+public record UploadConfirmRequest(String target, String slug, String publicId, String version, String signature) {
+}
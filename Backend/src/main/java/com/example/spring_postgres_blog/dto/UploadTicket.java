@@ -0,0 +1,12 @@
+package com.example.spring_postgres_blog.dto;
+
+import java.util.Map;
+
+/**
+ * Signed parameters for one browser upload: POST the file to uploadUrl as multipart form data with
+ * every entry of fields, then confirm the public_id, version and signature from the response.
+ *
+ * @param expiresAt epoch seconds after which the storage rejects the signature
+ */
+public record UploadTicket(String uploadUrl, Map<String, Object> fields, String publicId, long expiresAt) {
+}
@@ -0,0 +1,8 @@
+package com.example.spring_postgres_blog.dto;
+
+// Projection cho các truy vấn COUNT/SUM trên bảng products và posts
+public interface ViewTotals {
+    long getCount();
+
+    long getViews();
+}
@@ -0,0 +1,33 @@
+package com.example.spring_postgres_blog.event;
+
+/**
+ * Broadcasts committed {@link EntityChangeEvent}s to every backend instance so local caches
+ * and in-memory indexes can drop stale entries. Select the implementation with
+ * app.cache.invalidation: "postgres" (default, LISTEN/NOTIFY) or "local" for a single node.
+ * Delivery is best effort; subscribers are told when messages may have been lost.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Sends the event to the other nodes. Must be called after the change is committed. Does not
+     * block on the network; delivery may happen after this returns.
+     */
+    void publish(EntityChangeEvent event);
+
+    void subscribe(Subscriber subscriber);
+
+    interface Subscriber {
+
+        /**
+         * Called for every event published by another node.
+         */
+        void onChange(EntityChangeEvent event);
+
+        /**
+         * Called when the bus lost its connection, or another node dropped events, so events may have
+         * been missed.
+         */
+        default void onMissedEvents() {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.spring_postgres_blog.event;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.model.CartItem;
+import com.example.spring_postgres_blog.model.Post;
+import com.example.spring_postgres_blog.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Keeps the local caches of every node in line with committed entity changes.
+ * <p>
+ * Local changes are evicted here after commit (the @CacheEvict on the services may run before commit,
+ * so a concurrent read could otherwise put the old row back) and forwarded to the
+ * {@link CacheInvalidationBus}. Changes from other nodes are evicted the same way and re-published
+ * as remote {@link EntityChangeEvent}s, so the search index and suggestions follow them too.
+ */
+@Component
+public class CacheInvalidationRelay implements CacheInvalidationBus.Subscriber {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationRelay.class);
+
+    private final CacheManager cacheManager;
+    private final CacheInvalidationBus bus;
+    private final ApplicationEventPublisher publisher;
+
+    public CacheInvalidationRelay(CacheManager cacheManager, CacheInvalidationBus bus,
+            ApplicationEventPublisher publisher) {
+        this.cacheManager = cacheManager;
+        this.bus = bus;
+        this.publisher = publisher;
+        bus.subscribe(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        evict(event);
+        if (!event.remote()) {
+            bus.publish(event);
+        }
+    }
+
+    @Override
+    public void onChange(EntityChangeEvent event) {
+        // Không có transaction ở luồng listener, fallbackExecution sẽ gọi lại onEntityChange
+        publisher.publishEvent(event);
+    }
+
+    @Override
+    public void onMissedEvents() {
+        logger.info("Cache invalidation messages may have been missed, clearing all local caches");
+        for (String name : cacheManager.getCacheNames()) {
+            clear(name);
+        }
+    }
+
+    private void evict(EntityChangeEvent event) {
+        Cache versions = cacheManager.getCache(CacheConfig.COLLECTION_VERSIONS);
+        if (versions != null) {
+            versions.evict(event.entityType());
+        }
+        if (EntityChangeEvent.PRODUCT.equals(event.entityType())) {
+            evictDetail(CacheConfig.PRODUCT_BY_SLUG, event, Product.class, Product::getId);
+            clear(CacheConfig.TOP_DISCOUNT_PRODUCTS);
+            clear(CacheConfig.DISCOUNT_PRODUCTS);
+            evictCartsHolding(event.id());
+        } else if (EntityChangeEvent.CART.equals(event.entityType())) {
+            evict(CacheConfig.CART_ITEMS, event.id());
+            evict(CacheConfig.CART_TOTALS, event.id());
+        } else if (EntityChangeEvent.POST.equals(event.entityType())) {
+            evictDetail(CacheConfig.POST_BY_SLUG, event, Post.class, Post::getId);
+            clear(CacheConfig.NEWEST_POSTS);
+            clear(CacheConfig.TOP_POST);
+        }
+    }
+
+    // Slug có thể đã đổi, nên xóa cả theo slug mới lẫn mọi entry đang giữ cùng id
+    private <T> void evictDetail(String cacheName, EntityChangeEvent event, Class<T> type,
+            Function<T, Long> idOf) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        if (event.slug() != null) {
+            cache.evict(event.slug());
+        }
+        if (event.id() != null
+                && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            nativeCache.asMap().values()
+                    .removeIf(value -> type.isInstance(value) && Objects.equals(idOf.apply(type.cast(value)), event.id()));
+        } else if (event.id() != null) {
+            cache.clear();
+        }
+    }
+
+    // Giỏ hàng cache kèm giá/giảm giá/stock của sản phẩm: chỉ bỏ giỏ của những người đang có sản phẩm này
+    private void evictCartsHolding(Long productId) {
+        Cache cache = cacheManager.getCache(CacheConfig.CART_ITEMS);
+        if (cache == null) {
+            return;
+        }
+        if (productId != null
+                && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            nativeCache.asMap().values().removeIf(value -> value instanceof List<?> items && items.stream()
+                    .anyMatch(item -> item instanceof CartItem cartItem && cartItem.getProduct() != null
+                            && productId.equals(cartItem.getProduct().getId())));
+        } else {
+            cache.clear();
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.spring_postgres_blog.event;
+
+/**
+ * Published after a cached or indexed entity is created, updated or deleted.
+ *
+ * @param entityType lowercase entity name, e.g. "product", "post" or "category"
+ * @param id         primary key of the entity
+ * @param slug       slug at the time of the change, null for entities without one
+ * @param action     what happened to the entity
+ * @param remote     true when the change was committed by another node and arrived through
+ *                   the {@link CacheInvalidationBus}
+ */
+public record EntityChangeEvent(String entityType, Long id, String slug, Action action, boolean remote) {
+
+    public static final String PRODUCT = "product";
+    public static final String POST = "post";
+    public static final String CATEGORY = "category";
+    public static final String BANNER = "banner";
+    public static final String INFORMATION = "information";
+    // Cả giỏ của một user thay đổi; id là user id, không phải id của CartItem
+    public static final String CART = "cart";
+
+    public enum Action {
+        CREATED, UPDATED, DELETED
+    }
+
+    public EntityChangeEvent(String entityType, Long id, String slug, Action action) {
+        this(entityType, id, slug, action, false);
+    }
+
+    public EntityChangeEvent asRemote() {
+        return new EntityChangeEvent(entityType, id, slug, action, true);
+    }
+}
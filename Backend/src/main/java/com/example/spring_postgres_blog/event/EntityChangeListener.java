@@ -0,0 +1,58 @@
+package com.example.spring_postgres_blog.event;
+
+import com.example.spring_postgres_blog.model.Banner;
+import com.example.spring_postgres_blog.model.Category;
+import com.example.spring_postgres_blog.model.Information;
+import com.example.spring_postgres_blog.model.Post;
+import com.example.spring_postgres_blog.model.Product;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that turns Hibernate lifecycle callbacks into {@link EntityChangeEvent}s.
+ * Spring Boot wires Hibernate's bean container to Spring, so this listener gets constructor injection.
+ * Consumers should use @TransactionalEventListener so they only react after commit.
+ */
+@Component
+public class EntityChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public EntityChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    public void onPersist(Object entity) {
+        publish(entity, EntityChangeEvent.Action.CREATED);
+    }
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        publish(entity, EntityChangeEvent.Action.UPDATED);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        publish(entity, EntityChangeEvent.Action.DELETED);
+    }
+
+    private void publish(Object entity, EntityChangeEvent.Action action) {
+        if (entity instanceof Product product) {
+            publisher.publishEvent(
+                    new EntityChangeEvent(EntityChangeEvent.PRODUCT, product.getId(), product.getSlug(), action));
+        } else if (entity instanceof Post post) {
+            publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.POST, post.getId(), post.getSlug(), action));
+        } else if (entity instanceof Category category) {
+            publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.CATEGORY, category.getId(), null, action));
+        } else if (entity instanceof Banner banner) {
+            publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.BANNER, banner.getId(), null, action));
+        } else if (entity instanceof Information information) {
+            publisher.publishEvent(
+                    new EntityChangeEvent(EntityChangeEvent.INFORMATION, information.getId(), null, action));
+        }
+    }
+}
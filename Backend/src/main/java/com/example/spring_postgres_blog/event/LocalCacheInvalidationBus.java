@@ -0,0 +1,20 @@
+package com.example.spring_postgres_blog.event;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-node deployments: there is nobody to notify.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation", havingValue = "local")
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+    @Override
+    public void publish(EntityChangeEvent event) {
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.spring_postgres_blog.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link CacheInvalidationBus} on Postgres LISTEN/NOTIFY, so no extra infrastructure is needed.
+ * <p>
+ * Neither side uses the application's pool: a daemon thread keeps its own LISTEN connection open
+ * straight from the JDBC driver. {@link #publish} only queues the message; a single sender thread
+ * drains the bounded queue and sends everything waiting as one NOTIFY statement on its own auto-commit
+ * connection, so request threads never wait on the database and NOTIFY is never swallowed by a
+ * caller's transaction. Every message carries the sender's node id and a node ignores its own messages.
+ * NOTIFY is not durable: after a reconnect, or when the sender had to drop messages (queue full,
+ * database down), subscribers get {@link Subscriber#onMissedEvents()} and should drop everything.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation", havingValue = "postgres", matchIfMissing = true)
+public class PostgresCacheInvalidationBus implements CacheInvalidationBus {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresCacheInvalidationBus.class);
+
+    private static final int POLL_TIMEOUT_MS = 10_000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 500;
+    private static final String NOTIFY = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload";
+    // Loại tin đặc biệt: bên nhận coi như đã lỡ tin và xóa toàn bộ cache
+    private static final String RESET = "*";
+
+    private final String url;
+    private final Properties credentials = new Properties();
+    private final BlockingQueue<String> outbox = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Counter published;
+    private final Counter received;
+    private final Counter reconnects;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    // Có tin bị bỏ (hàng đợi đầy hoặc gửi lỗi): lần gửi được tiếp theo kèm một tin RESET
+    private volatile boolean lost;
+    private Thread listener;
+    private Thread sender;
+    private Connection notifyConnection;
+
+    public PostgresCacheInvalidationBus(@Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password, MeterRegistry meterRegistry,
+            @Value("${app.cache.invalidation.channel:cache_invalidation}") String channel) {
+        // LISTEN không nhận tham số bind, chỉ cho phép tên kênh an toàn
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid invalidation channel: " + channel);
+        }
+        this.url = url;
+        if (!username.isEmpty()) {
+            credentials.setProperty("user", username);
+        }
+        if (!password.isEmpty()) {
+            credentials.setProperty("password", password);
+        }
+        this.channel = channel;
+        this.published = Counter.builder("cache.invalidation.published").register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.received").register(meterRegistry);
+        this.reconnects = Counter.builder("cache.invalidation.reconnects").register(meterRegistry);
+        this.dropped = Counter.builder("cache.invalidation.dropped").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = new Thread(this::listenLoop, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        sender = new Thread(this::sendLoop, "cache-invalidation-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        sender.interrupt();
+        listener.join(POLL_TIMEOUT_MS);
+        sender.join(POLL_TIMEOUT_MS);
+    }
+
+    /**
+     * True once the LISTEN connection is established; messages sent before that are not seen.
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public void publish(EntityChangeEvent event) {
+        String payload = payload(new Message(nodeId, event.entityType(), event.id(), event.slug(), event.action()));
+        if (!outbox.offer(payload)) {
+            dropped.increment();
+            lost = true;
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void listenLoop() {
+        long backoff = 1000;
+        boolean connectedBefore = false;
+        while (running) {
+            // Giữ kết nối suốt đời node nên mở thẳng từ driver, không lấy chỗ của pool
+            try (Connection connection = DriverManager.getConnection(url, credentials)) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening = true;
+                backoff = 1000;
+                if (connectedBefore) {
+                    reconnects.increment();
+                    subscribers.forEach(Subscriber::onMissedEvents);
+                }
+                connectedBefore = true;
+
+                while (running) {
+                    // Blocks until a notification arrives or the timeout passes; a dead connection throws
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                if (!running) {
+                    break;
+                }
+                logger.warn("Cache invalidation listener disconnected, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+        listening = false;
+    }
+
+    private void sendLoop() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        long backoff = 1000;
+        while (running || !outbox.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    String first = running ? outbox.take() : outbox.poll();
+                    if (first == null) {
+                        break;
+                    }
+                    batch.add(first);
+                    outbox.drainTo(batch, MAX_BATCH - 1);
+                }
+                send(batch);
+                batch.clear();
+                backoff = 1000;
+            } catch (InterruptedException e) {
+                // Lúc tắt: gửi nốt những gì còn trong hàng đợi rồi thoát
+                running = false;
+            } catch (SQLException e) {
+                closeNotifyConnection();
+                dropped.increment(batch.size());
+                batch.clear();
+                lost = true;
+                if (!running) {
+                    break;
+                }
+                logger.warn("Failed to publish cache invalidations, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+        closeNotifyConnection();
+    }
+
+    private void send(List<String> batch) throws SQLException {
+        boolean reset = lost;
+        lost = false;
+        if (reset) {
+            batch.add(0, payload(new Message(nodeId, RESET, null, null, null)));
+        }
+        if (notifyConnection == null) {
+            notifyConnection = DriverManager.getConnection(url, credentials);
+            notifyConnection.setAutoCommit(true);
+        }
+        try (PreparedStatement statement = notifyConnection.prepareStatement(NOTIFY)) {
+            statement.setString(1, channel);
+            statement.setArray(2, notifyConnection.createArrayOf("text", batch.toArray()));
+            statement.execute();
+        } catch (SQLException e) {
+            lost = true;
+            throw e;
+        }
+        published.increment(batch.size() - (reset ? 1 : 0));
+    }
+
+    private void closeNotifyConnection() {
+        if (notifyConnection != null) {
+            try {
+                notifyConnection.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close cache invalidation sender connection", e);
+            }
+            notifyConnection = null;
+        }
+    }
+
+    private String payload(Message message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void dispatch(String payload) {
+        Message message;
+        try {
+            message = objectMapper.readValue(payload, Message.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Ignoring malformed cache invalidation payload: {}", payload);
+            return;
+        }
+        if (nodeId.equals(message.node())) {
+            return;
+        }
+        if (RESET.equals(message.type())) {
+            logger.info("Node {} dropped cache invalidation messages", message.node());
+            subscribers.forEach(Subscriber::onMissedEvents);
+            return;
+        }
+        received.increment();
+        EntityChangeEvent event = new EntityChangeEvent(message.type(), message.id(), message.slug(),
+                message.action(), true);
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.onChange(event);
+            } catch (RuntimeException e) {
+                logger.warn("Cache invalidation subscriber failed for {} {}", event.entityType(), event.id(), e);
+            }
+        }
+    }
+
+    private record Message(String node, String type, Long id, String slug, EntityChangeEvent.Action action) {
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.spring_postgres_blog.model;
 
+import com.example.spring_postgres_blog.event.EntityChangeListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "banners")
 public class Banner {
 
@@ -20,6 +23,9 @@ public class Banner {
     @Column(name = "created_at")
     private LocalDateTime created_at;
 
+    @Column(name = "updated_at")
+    private LocalDateTime updated_at;
+
     public Banner() {
         this.created_at = LocalDateTime.now();
     }
@@ -58,4 +64,19 @@ public class Banner {
     public void setcreated_at(LocalDateTime created_at) {
         this.created_at = created_at;
     }
+
+    public LocalDateTime getupdated_at() {
+        return updated_at;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getLastModified() {
+        return updated_at != null ? updated_at : created_at;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updated_at = LocalDateTime.now();
+    }
 }
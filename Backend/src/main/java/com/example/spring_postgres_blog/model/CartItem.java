@@ -1,19 +1,22 @@
 package com.example.spring_postgres_blog.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "product_id" }))
 public class CartItem {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonIgnore
     private User user;
 
-    @ManyToOne
+    // Nạp bằng entity graph ở CartRepository
+    @ManyToOne(fetch = FetchType.LAZY)
     private Product product;
 
     private int quantity;
@@ -1,9 +1,11 @@
 package com.example.spring_postgres_blog.model;
 
+import com.example.spring_postgres_blog.event.EntityChangeListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "categories")
 public class Category {
 
@@ -14,6 +16,14 @@ public class Category {
     @Column(nullable = false)
     private String title;
 
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
     public Long getId() {
         return id;
     }
@@ -29,4 +39,8 @@ public class Category {
     public void setTitle(String title) {
         this.title = title;
     }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
 }
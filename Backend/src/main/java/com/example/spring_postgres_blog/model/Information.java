@@ -1,10 +1,13 @@
 package com.example.spring_postgres_blog.model;
 
+import com.example.spring_postgres_blog.event.EntityChangeListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "information")
 public class Information {
     @Id
@@ -20,9 +23,17 @@ public class Information {
     @Column(updatable = false)
     private LocalDateTime created_at;
 
+    private LocalDateTime updated_at;
+
     @PrePersist
     protected void onCreate() {
         this.created_at = LocalDateTime.now();
+        this.updated_at = this.created_at;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updated_at = LocalDateTime.now();
     }
 
     public Long getId() {
@@ -56,4 +67,13 @@ public class Information {
     public void setCreatedAt(LocalDateTime created_at) {
         this.created_at = created_at;
     }
+
+    public LocalDateTime getUpdatedAt() {
+        return updated_at;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getLastModified() {
+        return updated_at != null ? updated_at : created_at;
+    }
 }
@@ -1,20 +1,26 @@
 package com.example.spring_postgres_blog.model;
 
 import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// Index cho trang admin (…, created_at, id) nằm trong db/migration/V4__lookup_indexes.sql
 @Table(name = "orders")
 public class Order {
+    // Sequence (pooled, 50 id mỗi lần gọi) thay cho IDENTITY để Hibernate gom INSERT thành batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    // LAZY + không serialize: tránh nạp cả User (mật khẩu, mảng favorites) cho mỗi đơn hàng
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
+    @JsonIgnore
     private User user;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -7,7 +7,8 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 @Table(name = "order_items")
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -15,7 +16,8 @@ public class OrderItem {
     @JsonBackReference
     private Order order;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    // Nạp bằng entity graph ở OrderRepository, còn lại theo lô (default_batch_fetch_size)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
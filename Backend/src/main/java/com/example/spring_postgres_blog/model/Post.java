@@ -1,5 +1,7 @@
 package com.example.spring_postgres_blog.model;
 
+import com.example.spring_postgres_blog.event.EntityChangeListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import org.hibernate.annotations.Type;
 
@@ -9,6 +11,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "posts")
 public class Post {
 
@@ -20,18 +23,26 @@ public class Post {
     private String title;
     private String description;
     private String category;
+    // ViewCounter cộng lượt xem bằng SQL; save() sau khi sửa bài không được ghi lại số đã đọc
+    @Column(updatable = false)
     private Integer views = 0;
 
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    // Không serialize: tránh lazy-load (N+1) và vòng lặp Post -> PostView -> Post khi trả JSON
+    @JsonIgnore
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<PostView> viewsPerDay = new ArrayList<>();
 
     private String image_url;
     private LocalDateTime created_at = LocalDateTime.now();
+    private LocalDateTime updated_at;
+    @Column(unique = true)
     private String slug;
     private String image_public_id;
+    private String image_srcset;
+    private String image_srcset_webp;
 
     // SEO fields
     private String meta_title;
@@ -120,6 +131,21 @@ public class Post {
         this.created_at = createdAt;
     }
 
+    public LocalDateTime getUpdatedAt() {
+        return updated_at;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getLastModified() {
+        return updated_at != null ? updated_at : created_at;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updated_at = LocalDateTime.now();
+    }
+
     public String getSlug() {
         return slug;
     }
@@ -136,6 +162,22 @@ public class Post {
         this.image_public_id = imagePublicId;
     }
 
+    public String getImageSrcset() {
+        return image_srcset;
+    }
+
+    public void setImageSrcset(String imageSrcset) {
+        this.image_srcset = imageSrcset;
+    }
+
+    public String getImageSrcsetWebp() {
+        return image_srcset_webp;
+    }
+
+    public void setImageSrcsetWebp(String imageSrcsetWebp) {
+        this.image_srcset_webp = imageSrcsetWebp;
+    }
+
     public String getMetaTitle() {
         return meta_title;
     }
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "post_views")
+@Table(name = "post_views", uniqueConstraints = @UniqueConstraint(columnNames = { "post_id", "date" }))
 public class PostView {
 
     @Id
@@ -1,12 +1,19 @@
 package com.example.spring_postgres_blog.model;
 
+import com.example.spring_postgres_blog.event.EntityChangeListener;
+import com.example.spring_postgres_blog.util.TextNormalizer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.persistence.criteria.CriteriaBuilder.In;
 
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Table(name = "products")
+// Product có thể là proxy LAZY của Hibernate (OrderItem, CartItem), bỏ qua các trường nội bộ của proxy
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class Product {
 
     @Id
@@ -19,19 +26,41 @@ public class Product {
     private Double price;
     private String description;
     private Double discount;
+    // Chỉ ghi lúc tạo: ViewCounter cộng dồn bằng SQL, save() không được ghi đè giá trị đã đọc
+    @Column(updatable = false)
     private Integer views;
     private Double rating;
     private String url;
     private String category;
     private String image_url;
     private String image_public_id;
+    // srcset của các bản thu nhỏ, ghi lúc upload ảnh
+    private String image_srcset;
+    private String image_srcset_webp;
+    // Checkout/hủy đơn trừ và cộng kho bằng UPDATE có điều kiện trong OrderService
+    @Column(updatable = false)
     private Integer stock;
 
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Dùng làm ETag/Last-Modified; lượt xem cập nhật hàng loạt không đổi cột này
+    private LocalDateTime updatedAt;
+
+    // Văn bản đã bỏ dấu dùng cho full-text search, cột search_vector (tsvector) được Postgres sinh từ cột này
+    @JsonIgnore
+    @Column(name = "search_text", columnDefinition = "TEXT")
+    private String searchText;
+
     public Product() {
     }
 
+    @PrePersist
+    @PreUpdate
+    protected void beforeSave() {
+        this.searchText = TextNormalizer.foldAll(title, category, description);
+        this.updatedAt = LocalDateTime.now();
+    }
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -129,6 +158,22 @@ public class Product {
         this.image_public_id = image_public_id;
     }
 
+    public String getImageSrcset() {
+        return image_srcset;
+    }
+
+    public void setImageSrcset(String image_srcset) {
+        this.image_srcset = image_srcset;
+    }
+
+    public String getImageSrcsetWebp() {
+        return image_srcset_webp;
+    }
+
+    public void setImageSrcsetWebp(String image_srcset_webp) {
+        this.image_srcset_webp = image_srcset_webp;
+    }
+
     public Integer getStock() {
         return stock;
     }
@@ -144,4 +189,13 @@ public class Product {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getLastModified() {
+        return updatedAt != null ? updatedAt : createdAt;
+    }
 }
@@ -0,0 +1,52 @@
+package com.example.spring_postgres_blog.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "product_views", uniqueConstraints = @UniqueConstraint(columnNames = { "product_id", "date" }))
+public class ProductView {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private LocalDate date; // ngày cụ thể
+    private Integer view_count;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
+    private Product product;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public Integer getViewCount() {
+        return view_count;
+    }
+
+    public void setViewCount(Integer view_count) {
+        this.view_count = view_count;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.spring_postgres_blog.repository;
 
+import com.example.spring_postgres_blog.dto.CollectionVersion;
 import com.example.spring_postgres_blog.model.Banner;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface BannerRepository extends JpaRepository<Banner, Long> {
+
+    @Query("SELECT COUNT(b) AS count, MAX(COALESCE(b.updated_at, b.created_at)) AS lastModified FROM Banner b")
+    CollectionVersion getCollectionVersion();
 }
 
@@ -1,7 +1,11 @@
 package com.example.spring_postgres_blog.repository;
 
+import com.example.spring_postgres_blog.dto.CartTotals;
 import com.example.spring_postgres_blog.model.CartItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,7 +13,19 @@ import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<CartItem, Long> {
+    @EntityGraph(attributePaths = "product")
     List<CartItem> findByUserId(Long userId);
 
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
+
+    @Query("SELECT COUNT(c) AS count, COALESCE(SUM(c.quantity), 0) AS quantity FROM CartItem c WHERE c.user.id = :userId")
+    CartTotals getTotals(Long userId);
+
+    @Query("SELECT c.user.id FROM CartItem c WHERE c.id = :id")
+    Optional<Long> findUserIdById(Long id);
+
+    // Một câu DELETE cho cả giỏ thay vì một câu cho mỗi dòng như deleteAll(items)
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.user.id = :userId")
+    int deleteByUserId(Long userId);
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package com.example.spring_postgres_blog.repository;
 
+import com.example.spring_postgres_blog.dto.CollectionVersion;
 import com.example.spring_postgres_blog.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedAt) AS lastModified FROM Category c")
+    CollectionVersion getCollectionVersion();
 }
@@ -1,9 +1,14 @@
 package com.example.spring_postgres_blog.repository;
 
+import com.example.spring_postgres_blog.dto.CollectionVersion;
 import com.example.spring_postgres_blog.model.Information;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface InformationRepository extends JpaRepository<Information, Long> {
+
+    @Query("SELECT COUNT(i) AS count, MAX(COALESCE(i.updated_at, i.created_at)) AS lastModified FROM Information i")
+    CollectionVersion getCollectionVersion();
 }
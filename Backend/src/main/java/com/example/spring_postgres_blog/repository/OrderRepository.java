@@ -1,11 +1,24 @@
 package com.example.spring_postgres_blog.repository;
 
 import com.example.spring_postgres_blog.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
+    // Nạp đơn hàng + orderItems + product trong một câu lệnh thay vì 1 + N
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product" })
     List<Order> findByUserId(Long userId);
 
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product" })
     List<Order> findAllByOrderByCreatedAtDesc();
+
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product" })
+    Optional<Order> findWithItemsById(Long id);
+
+    // Trang thứ hai của findIdsPage: nạp đúng các đơn đã chọn kèm items, thứ tự do service sắp lại
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product" })
+    List<Order> findWithItemsByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,17 @@
+package com.example.spring_postgres_blog.repository;
+
+import com.example.spring_postgres_blog.dto.OrderFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Ids of the orders matching {@code filter}, newest first by (createdAt, id).
+     *
+     * @param createdAt createdAt of the last order of the previous page, null for the first page
+     * @param id        id of the last order of the previous page, null for the first page
+     */
+    List<Long> findIdsPage(OrderFilter filter, LocalDateTime createdAt, Long id, int limit);
+}
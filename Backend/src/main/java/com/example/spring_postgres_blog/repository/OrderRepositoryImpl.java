@@ -0,0 +1,68 @@
+package com.example.spring_postgres_blog.repository;
+
+import com.example.spring_postgres_blog.dto.OrderFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the admin order query from the filters that are actually set, so each combination gets
+ * its own plan on the matching (…, created_at, id) index instead of one plan full of
+ * "(:param IS NULL OR …)" branches.
+ */
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIdsPage(OrderFilter filter, LocalDateTime createdAt, Long id, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id FROM orders WHERE TRUE");
+        Map<String, Object> params = new LinkedHashMap<>();
+        if (filter.status() != null) {
+            sql.append(" AND status = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.userId() != null) {
+            sql.append(" AND user_id = :userId");
+            params.put("userId", filter.userId());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < :to");
+            params.put("to", filter.to());
+        }
+        if (filter.query() != null) {
+            // LOWER(...) LIKE khớp với index trigram trên lower(email) / lower(full_name)
+            sql.append(" AND (LOWER(email) LIKE :query OR LOWER(full_name) LIKE :query)");
+            params.put("query", "%" + escapeLike(filter.query().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (createdAt != null && id != null) {
+            sql.append(" AND (created_at, id) < (:createdAt, :id)");
+            params.put("createdAt", createdAt);
+            params.put("id", id);
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT :limit");
+        params.put("limit", limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Long.class);
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Long> ids = query.getResultList();
+        return ids;
+    }
+
+    // '\' là ký tự escape mặc định của LIKE trong Postgres
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
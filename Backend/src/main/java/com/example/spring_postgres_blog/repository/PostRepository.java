@@ -1,26 +1,58 @@
 package com.example.spring_postgres_blog.repository;
 
+import com.example.spring_postgres_blog.dto.CollectionVersion;
+import com.example.spring_postgres_blog.dto.PostSummary;
+import com.example.spring_postgres_blog.dto.SearchDocument;
+import com.example.spring_postgres_blog.dto.ViewTotals;
 import com.example.spring_postgres_blog.model.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    // Cột cho PostSummary, không đọc content
+    String SUMMARY_SELECT = "SELECT p.id AS id, p.title AS title, p.description AS description, "
+            + "p.category AS category, p.views AS views, p.image_url AS imageUrl, p.image_srcset AS imageSrcset, "
+            + "p.image_srcset_webp AS imageSrcsetWebp, p.created_at AS createdAt, "
+            + "p.slug AS slug, p.meta_title AS metaTitle, p.meta_description AS metaDescription, "
+            + "p.meta_keywords AS metaKeywords, p.meta_url AS metaURL FROM Post p";
+
     Optional<Post> findBySlug(String slug);
 
-    List<Post> findByCategory(String category);
+    @Query(SUMMARY_SELECT + " ORDER BY p.id")
+    List<PostSummary> findAllSummaries();
+
+    @Query(SUMMARY_SELECT + " WHERE p.category = :category ORDER BY p.id")
+    List<PostSummary> findSummariesByCategory(String category);
+
+    @Query(SUMMARY_SELECT + " WHERE p.id IN :ids")
+    List<PostSummary> findSummariesByIdIn(Collection<Long> ids);
 
-    @Query("SELECT p FROM Post p WHERE " +
+    @Query(SUMMARY_SELECT + " WHERE " +
             "LOWER(p.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
             "LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Post> searchByTitleOrDescription(String query);
+    List<PostSummary> searchByTitleOrDescription(String query);
+
+    @Query(SUMMARY_SELECT + " ORDER BY p.created_at DESC")
+    List<PostSummary> findNewestSummaries(Pageable pageable);
+
+    @Query("SELECT COUNT(p) AS count, COALESCE(SUM(p.views), 0) AS views FROM Post p")
+    ViewTotals getViewTotals();
+
+    @Query("SELECT COUNT(p) AS count, MAX(COALESCE(p.updated_at, p.created_at)) AS lastModified FROM Post p")
+    CollectionVersion getCollectionVersion();
 
-    @Query(value = "SELECT * FROM posts ORDER BY created_at DESC LIMIT 5", nativeQuery = true)
-    List<Post> findTop5Newest();
+    // Dùng để dựng index tìm kiếm trong bộ nhớ theo từng lô id tăng dần
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.category AS category "
+            + "FROM Post p WHERE p.id > :afterId ORDER BY p.id")
+    List<SearchDocument> findSearchDocumentsAfter(Long afterId, Pageable pageable);
 
-    @Query(value = "SELECT * FROM posts ORDER BY created_at DESC LIMIT 1", nativeQuery = true)
-    Post findTop1Newest();
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.category AS category "
+            + "FROM Post p WHERE p.id = :id")
+    Optional<SearchDocument> findSearchDocumentById(Long id);
 }
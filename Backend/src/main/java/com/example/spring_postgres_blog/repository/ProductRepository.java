@@ -1,39 +1,141 @@
 package com.example.spring_postgres_blog.repository;
 
-import com.example.spring_postgres_blog.model.Post;
+import com.example.spring_postgres_blog.dto.CollectionVersion;
+import com.example.spring_postgres_blog.dto.ProductCard;
+import com.example.spring_postgres_blog.dto.SearchHit;
+import com.example.spring_postgres_blog.dto.SuggestionSource;
+import com.example.spring_postgres_blog.dto.SearchDocument;
+import com.example.spring_postgres_blog.dto.ViewTotals;
 import com.example.spring_postgres_blog.model.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
-    List<Product> findByCategoryIgnoreCase(String category);
+    // Cột cho ProductCard; alias trong ngoặc kép để Postgres giữ nguyên chữ hoa
+    String CARD_COLUMNS = "id AS id, slug AS slug, title AS title, price AS price, description AS description, "
+            + "discount AS discount, views AS views, rating AS rating, url AS url, category AS category, "
+            + "image_url AS \"imageUrl\", image_srcset AS \"imageSrcset\", image_srcset_webp AS \"imageSrcsetWebp\", "
+            + "stock AS stock, created_at AS \"createdAt\"";
+
+    String CARD_SELECT = "SELECT p.id AS id, p.slug AS slug, p.title AS title, p.price AS price, "
+            + "p.description AS description, p.discount AS discount, p.views AS views, p.rating AS rating, "
+            + "p.url AS url, p.category AS category, p.image_url AS imageUrl, p.image_srcset AS imageSrcset, "
+            + "p.image_srcset_webp AS imageSrcsetWebp, p.stock AS stock, p.createdAt AS createdAt FROM Product p";
+
+    @Query(CARD_SELECT + " ORDER BY p.id")
+    List<ProductCard> findAllCards();
+
+    @Query(CARD_SELECT + " WHERE LOWER(p.category) = LOWER(:category) ORDER BY p.id")
+    List<ProductCard> findCardsByCategory(String category);
+
+    @Query(CARD_SELECT + " WHERE p.id IN :ids")
+    List<ProductCard> findCardsByIdIn(Collection<Long> ids);
 
     Optional<Product> findBySlug(String slug);
 
-    // Search across multiple fields
-    @Query("""
-                SELECT p FROM Product p
-                WHERE LOWER(p.title) LIKE LOWER(CONCAT('%', :query, '%'))
-                   OR LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%'))
-                   OR LOWER(p.category) LIKE LOWER(CONCAT('%', :query, '%'))
-            """)
-    List<Product> searchByQuery(String query);
+    // Full-text search trên cột search_vector (GIN index), xếp theo độ liên quan rồi id, phân trang keyset
+    @Query(value = """
+                SELECT id AS id, ts_rank(search_vector, to_tsquery('simple', :tsquery)) AS rank
+                FROM products
+                WHERE search_vector @@ to_tsquery('simple', :tsquery)
+                  AND (ts_rank(search_vector, to_tsquery('simple', :tsquery)), id) < (CAST(:rank AS real), :id)
+                ORDER BY ts_rank(search_vector, to_tsquery('simple', :tsquery)) DESC, id DESC
+                LIMIT :limit
+            """, nativeQuery = true)
+    List<SearchHit> searchRankedAfter(String tsquery, float rank, Long id, int limit);
 
-    @Query(value = "SELECT * FROM products ORDER BY discount DESC LIMIT 2", nativeQuery = true)
-    List<Product> findTop2ByOrderByDiscountDesc();
+    @Query(value = "SELECT " + CARD_COLUMNS + " FROM products ORDER BY discount DESC LIMIT 2", nativeQuery = true)
+    List<ProductCard> findTop2ByOrderByDiscountDesc();
 
-    @Query(value = "SELECT * FROM products WHERE discount > 0 ORDER BY discount DESC LIMIT 20", nativeQuery = true)
-    List<Product> findAllByOrderByDiscountDesc();
+    @Query(value = "SELECT " + CARD_COLUMNS + " FROM products WHERE discount > 0 ORDER BY discount DESC LIMIT 20",
+            nativeQuery = true)
+    List<ProductCard> findAllByOrderByDiscountDesc();
 
-    List<Product> findTop5ByOrderByCreatedAtDesc();
+    @Query(CARD_SELECT + " ORDER BY p.createdAt DESC")
+    List<ProductCard> findNewestCards(Pageable pageable);
 
-    List<Product> findTop5ByOrderByViewsDesc();
+    @Query(CARD_SELECT + " ORDER BY p.views DESC NULLS LAST, p.id DESC")
+    List<ProductCard> findTopByViews(Pageable pageable);
 
     boolean existsBySlug(String slug);
+
+    // Keyset pagination: truyền vị trí của dòng cuối trang trước, Pageable chỉ dùng để giới hạn số dòng
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE (created_at, id) < (:createdAt, :id)
+                ORDER BY created_at DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> findNewestAfter(LocalDateTime createdAt, Long id, Pageable pageable);
+
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE LOWER(category) = LOWER(:category)
+                  AND (created_at, id) < (:createdAt, :id)
+                ORDER BY created_at DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> findNewestByCategoryAfter(String category, LocalDateTime createdAt, Long id, Pageable pageable);
+
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE search_vector @@ to_tsquery('simple', :tsquery)
+                  AND (created_at, id) < (:createdAt, :id)
+                ORDER BY created_at DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> searchNewestAfter(String tsquery, LocalDateTime createdAt, Long id, Pageable pageable);
+
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE (COALESCE(discount, 0), id) < (:discount, :id)
+                ORDER BY COALESCE(discount, 0) DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> findByDiscountAfter(Double discount, Long id, Pageable pageable);
+
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE LOWER(category) = LOWER(:category)
+                  AND (COALESCE(discount, 0), id) < (:discount, :id)
+                ORDER BY COALESCE(discount, 0) DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> findByCategoryAndDiscountAfter(String category, Double discount, Long id, Pageable pageable);
+
+    @Query(value = "SELECT " + CARD_COLUMNS + """
+                FROM products
+                WHERE search_vector @@ to_tsquery('simple', :tsquery)
+                  AND (COALESCE(discount, 0), id) < (:discount, :id)
+                ORDER BY COALESCE(discount, 0) DESC, id DESC
+            """, nativeQuery = true)
+    Slice<ProductCard> searchByDiscountAfter(String tsquery, Double discount, Long id, Pageable pageable);
+
+    @Query("SELECT COUNT(p) AS count, COALESCE(SUM(p.views), 0) AS views FROM Product p")
+    ViewTotals getViewTotals();
+
+    @Query("SELECT COUNT(p) AS count, MAX(COALESCE(p.updatedAt, p.createdAt)) AS lastModified FROM Product p")
+    CollectionVersion getCollectionVersion();
+
+    // Dùng để dựng index tìm kiếm trong bộ nhớ theo từng lô id tăng dần
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.category AS category "
+            + "FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<SearchDocument> findSearchDocumentsAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.category AS category "
+            + "FROM Product p WHERE p.id = :id")
+    Optional<SearchDocument> findSearchDocumentById(Long id);
+
+    @Query("SELECT p.id AS id, p.slug AS slug, p.title AS title, p.views AS views, p.discount AS discount "
+            + "FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<SuggestionSource> findSuggestionSourcesAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id AS id, p.slug AS slug, p.title AS title, p.views AS views, p.discount AS discount "
+            + "FROM Product p WHERE p.id = :id")
+    Optional<SuggestionSource> findSuggestionSourceById(Long id);
 }
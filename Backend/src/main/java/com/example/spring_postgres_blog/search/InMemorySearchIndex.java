@@ -0,0 +1,121 @@
+package com.example.spring_postgres_blog.search;
+
+import com.example.spring_postgres_blog.dto.SearchDocument;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import com.example.spring_postgres_blog.repository.PostRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Product and post search served from {@link InvertedIndex} instead of Postgres.
+ * Enabled with app.search.engine=memory. The index is loaded once the application is ready
+ * and then follows {@link EntityChangeEvent}s; until loading finishes {@link #isReady()} is
+ * false and callers should fall back to the database.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "memory")
+public class InMemorySearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(InMemorySearchIndex.class);
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final PostRepository postRepository;
+    private final InvertedIndex products = new InvertedIndex();
+    private final InvertedIndex posts = new InvertedIndex();
+    private volatile boolean ready;
+
+    public InMemorySearchIndex(ProductRepository productRepository, PostRepository postRepository,
+            MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.postRepository = postRepository;
+
+        Gauge.builder("search.index.documents", products, InvertedIndex::size)
+                .tag("index", EntityChangeEvent.PRODUCT).register(meterRegistry);
+        Gauge.builder("search.index.documents", posts, InvertedIndex::size)
+                .tag("index", EntityChangeEvent.POST).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        int productCount = loadAll(products, productRepository::findSearchDocumentsAfter, true);
+        int postCount = loadAll(posts, postRepository::findSearchDocumentsAfter, false);
+        ready = true;
+        logger.info("Search index loaded {} products and {} posts in {} ms",
+                productCount, postCount, System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long[] searchProducts(String query, int limit) {
+        return products.search(query, limit);
+    }
+
+    public long[] searchPosts(String query, int limit) {
+        return posts.search(query, limit);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (EntityChangeEvent.PRODUCT.equals(event.entityType())) {
+            apply(products, event, productRepository.findSearchDocumentById(event.id()), true);
+        } else if (EntityChangeEvent.POST.equals(event.entityType())) {
+            apply(posts, event, postRepository.findSearchDocumentById(event.id()), false);
+        }
+    }
+
+    private void apply(InvertedIndex index, EntityChangeEvent event, Optional<SearchDocument> document,
+            boolean categoryIsSearchable) {
+        if (event.action() == EntityChangeEvent.Action.DELETED || document.isEmpty()) {
+            index.remove(event.id());
+        } else {
+            put(index, document.get(), categoryIsSearchable);
+        }
+        // Tombstones cost memory and scan time, rebuild postings once they are a quarter of the index
+        if (index.deletedCount() > 1000 && index.deletedCount() > index.size() / 4) {
+            index.compact();
+        }
+    }
+
+    private int loadAll(InvertedIndex index, BiFunction<Long, PageRequest, List<SearchDocument>> loader,
+            boolean categoryIsSearchable) {
+        long afterId = 0;
+        int count = 0;
+        while (true) {
+            List<SearchDocument> batch = loader.apply(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                return count;
+            }
+            for (SearchDocument document : batch) {
+                put(index, document, categoryIsSearchable);
+            }
+            count += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    // Sản phẩm tìm theo cả danh mục, bài viết chỉ theo tiêu đề và mô tả như query LIKE cũ
+    private void put(InvertedIndex index, SearchDocument document, boolean categoryIsSearchable) {
+        String body = categoryIsSearchable
+                ? Objects.toString(document.getDescription(), "") + " " + Objects.toString(document.getCategory(), "")
+                : document.getDescription();
+        index.put(document.getId(), document.getTitle(), body);
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.spring_postgres_blog.search;
+
+import com.example.spring_postgres_blog.util.TextNormalizer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over accent-folded terms with prefix matching.
+ * <p>
+ * Documents get a dense internal int id in insertion order, so every posting list is an
+ * append-only, already sorted int array. Replacing or removing a document only sets a
+ * tombstone bit; {@link #compact()} rewrites the postings once enough tombstones pile up.
+ * Title and body terms are kept apart so title hits rank first.
+ * <p>
+ * Thread-safe: searches share a read lock, writes take the write lock.
+ */
+public class InvertedIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final TreeMap<String, IntList> titleTerms = new TreeMap<>();
+    private final TreeMap<String, IntList> bodyTerms = new TreeMap<>();
+    private final Map<Long, Integer> docByEntityId = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] entityIds = new long[INITIAL_CAPACITY];
+    private long[] deleted = new long[INITIAL_CAPACITY >>> 6];
+    private int maxDoc;
+    private int deletedCount;
+
+    /**
+     * Adds the document, replacing any previous version with the same entity id.
+     */
+    public void put(long entityId, String title, String body) {
+        String[] titleTokens = tokenize(title);
+        String[] bodyTokens = tokenize(body);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(entityId);
+
+            int doc = maxDoc++;
+            ensureCapacity(maxDoc);
+            entityIds[doc] = entityId;
+            docByEntityId.put(entityId, doc);
+
+            addPostings(titleTerms, titleTokens, doc);
+            addPostings(bodyTerms, bodyTokens, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long entityId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(entityId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} entity ids whose title or body contains a term starting with
+     * every query token. Results are ordered by the number of tokens found in the title, then by most
+     * recently indexed.
+     */
+    public long[] search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            int words = (maxDoc + 63) >>> 6;
+            long[] candidates = null;
+            long[][] titleHits = new long[tokens.length][];
+
+            for (int i = 0; i < tokens.length; i++) {
+                long[] inTitle = prefixBits(titleTerms, tokens[i], words);
+                long[] matches = prefixBits(bodyTerms, tokens[i], words);
+                for (int w = 0; w < words; w++) {
+                    matches[w] |= inTitle[w];
+                }
+                titleHits[i] = inTitle;
+
+                if (candidates == null) {
+                    candidates = matches;
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        candidates[w] &= matches[w];
+                    }
+                }
+            }
+            for (int w = 0; w < words; w++) {
+                candidates[w] &= ~deleted[w];
+            }
+
+            return collectTop(candidates, titleHits, words, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return maxDoc - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops tombstoned documents from every posting list and renumbers the survivors.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (deletedCount == 0) {
+                return;
+            }
+            int[] remap = new int[maxDoc];
+            int next = 0;
+            for (int doc = 0; doc < maxDoc; doc++) {
+                if (isDeleted(doc)) {
+                    remap[doc] = -1;
+                } else {
+                    remap[doc] = next;
+                    entityIds[next] = entityIds[doc];
+                    next++;
+                }
+            }
+
+            compactTerms(titleTerms, remap);
+            compactTerms(bodyTerms, remap);
+
+            docByEntityId.replaceAll((entityId, doc) -> remap[doc]);
+            maxDoc = next;
+            deletedCount = 0;
+            Arrays.fill(deleted, 0L);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long entityId) {
+        Integer doc = docByEntityId.remove(entityId);
+        if (doc != null) {
+            deleted[doc >>> 6] |= 1L << doc;
+            deletedCount++;
+        }
+    }
+
+    private boolean isDeleted(int doc) {
+        return (deleted[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > entityIds.length) {
+            int capacity = Math.max(size, entityIds.length << 1);
+            entityIds = Arrays.copyOf(entityIds, capacity);
+            deleted = Arrays.copyOf(deleted, (capacity + 63) >>> 6);
+        }
+    }
+
+    private static void addPostings(Map<String, IntList> terms, String[] tokens, int doc) {
+        for (String token : tokens) {
+            IntList postings = terms.computeIfAbsent(token, t -> new IntList());
+            // Postings are appended in doc order, so a repeated token is always the last entry
+            if (postings.size == 0 || postings.values[postings.size - 1] != doc) {
+                postings.add(doc);
+            }
+        }
+    }
+
+    private static long[] prefixBits(TreeMap<String, IntList> terms, String prefix, int words) {
+        long[] bits = new long[words];
+        NavigableMap<String, IntList> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (IntList postings : range.values()) {
+            int[] values = postings.values;
+            for (int i = 0; i < postings.size; i++) {
+                int doc = values[i];
+                bits[doc >>> 6] |= 1L << doc;
+            }
+        }
+        return bits;
+    }
+
+    private long[] collectTop(long[] candidates, long[][] titleHits, int words, int limit) {
+        // One bucket per score; walk docs newest first so each bucket fills in recency order
+        int maxScore = titleHits.length;
+        long[][] buckets = new long[maxScore + 1][limit];
+        int[] bucketSizes = new int[maxScore + 1];
+        int full = 0;
+
+        for (int w = words - 1; w >= 0 && full <= maxScore; w--) {
+            long word = candidates[w];
+            while (word != 0) {
+                int bit = 63 - Long.numberOfLeadingZeros(word);
+                word &= ~(1L << bit);
+                int doc = (w << 6) + bit;
+
+                int score = 0;
+                for (long[] hits : titleHits) {
+                    if ((hits[w] & (1L << bit)) != 0) {
+                        score++;
+                    }
+                }
+                if (bucketSizes[score] < limit) {
+                    buckets[score][bucketSizes[score]++] = entityIds[doc];
+                    if (bucketSizes[score] == limit) {
+                        full++;
+                    }
+                }
+            }
+        }
+
+        long[] result = new long[limit];
+        int size = 0;
+        for (int score = maxScore; score >= 0 && size < limit; score--) {
+            int take = Math.min(bucketSizes[score], limit - size);
+            System.arraycopy(buckets[score], 0, result, size, take);
+            size += take;
+        }
+        return size == limit ? result : Arrays.copyOf(result, size);
+    }
+
+    private static void compactTerms(TreeMap<String, IntList> terms, int[] remap) {
+        terms.values().removeIf(postings -> {
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int doc = remap[postings.values[i]];
+                if (doc >= 0) {
+                    postings.values[kept++] = doc;
+                }
+            }
+            postings.size = kept;
+            postings.trim();
+            return kept == 0;
+        });
+    }
+
+    private static String[] tokenize(String text) {
+        String folded = TextNormalizer.fold(text);
+        return folded.isEmpty() ? new String[0] : folded.split(" ");
+    }
+
+    /**
+     * Growable int array, avoids boxing every posting.
+     */
+    static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        void trim() {
+            if (values.length > size && size > 0) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.spring_postgres_blog.search;
+
+import com.example.spring_postgres_blog.dto.SuggestionSource;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import com.example.spring_postgres_blog.model.Category;
+import com.example.spring_postgres_blog.repository.CategoryRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Typeahead suggestions for the storefront search box, served from a {@link SuggestionTrie}
+ * of product and category titles.
+ * <p>
+ * Product and category changes are applied incrementally after commit. Views move without entity
+ * events (see ViewCounter), so the whole trie is also rebuilt periodically to refresh weights.
+ */
+@Service
+public class SuggestionService {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionService.class);
+
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Danh mục luôn đứng trước sản phẩm khi cùng khớp tiền tố
+    private static final double CATEGORY_WEIGHT = 1000;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final Timer lookupTimer;
+
+    private volatile SuggestionTrie trie = new SuggestionTrie(MAX_SUGGESTIONS);
+    private volatile Queue<EntityChangeEvent> changesDuringRebuild;
+
+    public SuggestionService(ProductRepository productRepository, CategoryRepository categoryRepository,
+            MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.lookupTimer = Timer.builder("search.suggest")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public List<SuggestionTrie.Suggestion> suggest(String query, int limit) {
+        int n = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        return lookupTimer.record(() -> trie.suggest(query, n));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialLoad() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.suggest.rebuild-interval-ms:600000}",
+            fixedDelayString = "${app.suggest.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Queue<EntityChangeEvent> pending = new ConcurrentLinkedQueue<>();
+        changesDuringRebuild = pending;
+        try {
+            SuggestionTrie fresh = new SuggestionTrie(MAX_SUGGESTIONS);
+            for (Category category : categoryRepository.findAll()) {
+                putCategory(fresh, category);
+            }
+            long afterId = 0;
+            while (true) {
+                List<SuggestionSource> batch = productRepository.findSuggestionSourcesAfter(afterId,
+                        PageRequest.of(0, LOAD_BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (SuggestionSource product : batch) {
+                    putProduct(fresh, product);
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            trie = fresh;
+        } finally {
+            changesDuringRebuild = null;
+        }
+
+        // Thay đổi commit trong lúc dựng lại có thể chưa có trong snapshot, áp dụng lại lên trie mới
+        EntityChangeEvent event;
+        while ((event = pending.poll()) != null) {
+            apply(event);
+        }
+        logger.info("Suggestion trie rebuilt with {} entries in {} ms", trie.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        Queue<EntityChangeEvent> pending = changesDuringRebuild;
+        if (pending != null) {
+            pending.add(event);
+        }
+        apply(event);
+    }
+
+    private void apply(EntityChangeEvent event) {
+        SuggestionTrie current = trie;
+        if (EntityChangeEvent.PRODUCT.equals(event.entityType())) {
+            if (event.action() == EntityChangeEvent.Action.DELETED) {
+                current.remove(EntityChangeEvent.PRODUCT + ":" + event.id());
+            } else {
+                productRepository.findSuggestionSourceById(event.id())
+                        .ifPresentOrElse(product -> putProduct(current, product),
+                                () -> current.remove(EntityChangeEvent.PRODUCT + ":" + event.id()));
+            }
+        } else if (EntityChangeEvent.CATEGORY.equals(event.entityType())) {
+            if (event.action() == EntityChangeEvent.Action.DELETED) {
+                current.remove(EntityChangeEvent.CATEGORY + ":" + event.id());
+            } else {
+                categoryRepository.findById(event.id())
+                        .ifPresentOrElse(category -> putCategory(current, category),
+                                () -> current.remove(EntityChangeEvent.CATEGORY + ":" + event.id()));
+            }
+        }
+    }
+
+    private static void putProduct(SuggestionTrie target, SuggestionSource product) {
+        if (product.getTitle() == null) {
+            return;
+        }
+        int views = product.getViews() != null ? product.getViews() : 0;
+        double discount = product.getDiscount() != null ? product.getDiscount() : 0;
+        // log để sản phẩm cực nhiều view không lấn át hoàn toàn sản phẩm đang giảm giá sâu
+        double weight = Math.log1p(views) + discount / 10.0;
+        target.put(EntityChangeEvent.PRODUCT + ":" + product.getId(),
+                new SuggestionTrie.Suggestion(EntityChangeEvent.PRODUCT, product.getTitle(), product.getSlug()),
+                weight);
+    }
+
+    private static void putCategory(SuggestionTrie target, Category category) {
+        if (category.getTitle() == null) {
+            return;
+        }
+        // Trang danh mục dùng tên danh mục làm đường dẫn
+        target.put(EntityChangeEvent.CATEGORY + ":" + category.getId(),
+                new SuggestionTrie.Suggestion(EntityChangeEvent.CATEGORY, category.getTitle(), category.getTitle()),
+                CATEGORY_WEIGHT);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.spring_postgres_blog.search;
+
+import com.example.spring_postgres_blog.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie for typeahead suggestions.
+ * <p>
+ * Every entry is inserted under each word start of its accent-folded title, so "chay" finds
+ * "Giày chạy bộ". Each node caches the top-K entries of its subtree by weight, so a lookup is
+ * a walk down the prefix plus a copy of at most K entries. Keys deeper than {@value #MAX_DEPTH}
+ * characters are truncated to keep the node count bounded; longer queries are post-filtered.
+ * <p>
+ * Thread-safe: lookups share a read lock, writes take the write lock.
+ */
+public class SuggestionTrie {
+
+    static final int MAX_DEPTH = 16;
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator.comparingDouble((Entry e) -> e.weight).reversed()
+            .thenComparing(e -> e.id);
+
+    private final int topK;
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    public record Suggestion(String type, String title, String slug) {
+    }
+
+    /**
+     * Adds or replaces the entry with the given id, e.g. "product:42".
+     */
+    public void put(String id, Suggestion suggestion, double weight) {
+        Entry entry = new Entry(id, suggestion, weight, TextNormalizer.fold(suggestion.title()));
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                removeEntry(previous);
+            }
+            for (String key : keys(entry.folded)) {
+                insert(key, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                removeEntry(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String folded = TextNormalizer.fold(prefix);
+        if (folded.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String path = folded.length() > MAX_DEPTH ? folded.substring(0, MAX_DEPTH) : folded;
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < path.length() && node != null; i++) {
+                node = node.child(path.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+
+            List<Suggestion> result = new ArrayList<>(Math.min(limit, node.top.length));
+            for (Entry entry : node.top) {
+                if (result.size() == limit) {
+                    break;
+                }
+                if (path.length() == folded.length() || (" " + entry.folded).contains(" " + folded)) {
+                    result.add(entry.suggestion);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String key, Entry entry) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            node.offer(entry, topK);
+        }
+        node.terminals.add(entry);
+    }
+
+    private void removeEntry(Entry entry) {
+        for (String key : keys(entry.folded)) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length(); i++) {
+                path[i + 1] = path[i].child(key.charAt(i));
+            }
+            path[key.length()].terminals.remove(entry);
+
+            // Bottom-up, so each parent rebuilds its top-K from already corrected children
+            for (int depth = key.length(); depth > 0; depth--) {
+                Node node = path[depth];
+                if (node.children.length == 0 && node.terminals.isEmpty()) {
+                    path[depth - 1].removeChild(key.charAt(depth - 1));
+                } else if (node.contains(entry)) {
+                    node.recomputeTop(topK);
+                }
+            }
+        }
+    }
+
+    // Khóa là mọi hậu tố bắt đầu ở đầu một từ, cắt ở MAX_DEPTH ký tự
+    private static Set<String> keys(String folded) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (folded.isEmpty()) {
+            return keys;
+        }
+        int start = 0;
+        while (start >= 0) {
+            String suffix = folded.substring(start);
+            keys.add(suffix.length() > MAX_DEPTH ? suffix.substring(0, MAX_DEPTH) : suffix);
+            int space = folded.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        return keys;
+    }
+
+    private static final class Entry {
+        final String id;
+        final Suggestion suggestion;
+        final double weight;
+        final String folded;
+
+        Entry(String id, Suggestion suggestion, double weight, String folded) {
+            this.id = id;
+            this.suggestion = suggestion;
+            this.weight = weight;
+            this.folded = folded;
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        // Sorted parallel arrays: far smaller than a HashMap per node
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry[] top = NO_ENTRIES;
+        final List<Entry> terminals = new ArrayList<>(1);
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            Node node = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = c;
+            newChildren[at] = node;
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean contains(Entry entry) {
+            for (Entry e : top) {
+                if (e == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void offer(Entry entry, int k) {
+            if (contains(entry)) {
+                return;
+            }
+            if (top.length == k && BY_WEIGHT.compare(entry, top[k - 1]) >= 0) {
+                return;
+            }
+            int size = Math.min(top.length + 1, k);
+            Entry[] next = new Entry[size];
+            int src = 0;
+            boolean placed = false;
+            for (int dst = 0; dst < size; dst++) {
+                if (!placed && (src == top.length || BY_WEIGHT.compare(entry, top[src]) < 0)) {
+                    next[dst] = entry;
+                    placed = true;
+                } else {
+                    next[dst] = top[src++];
+                }
+            }
+            top = next;
+        }
+
+        void recomputeTop(int k) {
+            List<Entry> candidates = new ArrayList<>(terminals);
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            top = candidates.stream()
+                    .distinct()
+                    .sorted(BY_WEIGHT)
+                    .limit(k)
+                    .toArray(Entry[]::new);
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package com.example.spring_postgres_blog.service;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.example.spring_postgres_blog.model.Asset;
 import com.example.spring_postgres_blog.repository.AssetRepository;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.example.spring_postgres_blog.storage.UploadTarget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.util.*;
 
 @Service
@@ -18,7 +19,10 @@ public class AssetService {
     private AssetRepository assetRepository;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private StorageProvider storageProvider;
+
+    @Autowired
+    private ImageDeletionOutbox imageDeletions;
 
     public List<Asset> getAllAssets() {
         return assetRepository.findAll()
@@ -32,29 +36,23 @@ public class AssetService {
         String image_public_id = "";
 
         if (file != null && !file.isEmpty()) {
-            // Use CloudinaryService for upload
-            Map uploadResult = cloudinaryService.uploadWithOptions(file, "assets", 1200, 1200);
-            image_url = (String) uploadResult.get("secure_url");
-            image_public_id = (String) uploadResult.get("public_id");
+            StoredImage stored = storageProvider.store(file, UploadTarget.ASSET);
+            image_url = stored.url();
+            image_public_id = stored.publicId();
         }
 
         Asset asset = new Asset(image_url, image_public_id);
         return assetRepository.save(asset);
     }
 
+    @Transactional
     public boolean deleteAsset(Long id) {
         Optional<Asset> asset = assetRepository.findById(id);
         if (asset.isEmpty())
             return false;
 
-        // Delete from Cloudinary if public_id exists
-        if (asset.get().getImagePublicId() != null && !asset.get().getImagePublicId().isEmpty()) {
-            try {
-                cloudinaryService.delete(asset.get().getImagePublicId());
-            } catch (IOException e) {
-                System.err.println("Error deleting image from Cloudinary: " + e.getMessage());
-            }
-        }
+        // Ảnh trong kho do ImageDeletionOutbox xóa sau khi commit
+        imageDeletions.enqueue(asset.get().getImagePublicId());
 
         assetRepository.deleteById(id);
         return true;
@@ -2,11 +2,14 @@ package com.example.spring_postgres_blog.service;
 
 import com.example.spring_postgres_blog.model.Banner;
 import com.example.spring_postgres_blog.repository.BannerRepository;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.example.spring_postgres_blog.storage.UploadTarget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.util.*;
 
 @Service
@@ -16,7 +19,10 @@ public class BannerService {
     private BannerRepository bannerRepository;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private StorageProvider storageProvider;
+
+    @Autowired
+    private ImageDeletionOutbox imageDeletions;
 
     public List<Banner> getAllBanners() {
         return bannerRepository.findAll()
@@ -30,29 +36,24 @@ public class BannerService {
         String image_public_id = "";
 
         if (file != null && !file.isEmpty()) {
-            // Use CloudinaryService with custom dimensions for banners (wide format)
-            Map uploadResult = cloudinaryService.uploadWithOptions(file, "banners", 1920, 600);
-            image_url = (String) uploadResult.get("secure_url");
-            image_public_id = (String) uploadResult.get("public_id");
+            // Banners are wide: UploadTarget.BANNER limits them to 1920x600
+            StoredImage stored = storageProvider.store(file, UploadTarget.BANNER);
+            image_url = stored.url();
+            image_public_id = stored.publicId();
         }
 
         Banner banner = new Banner(image_url, image_public_id);
         return bannerRepository.save(banner);
     }
 
+    @Transactional
     public boolean deleteBanner(Long id) {
         Optional<Banner> banner = bannerRepository.findById(id);
         if (banner.isEmpty())
             return false;
 
-        // Delete from Cloudinary if public_id exists
-        if (banner.get().getimage_public_id() != null && !banner.get().getimage_public_id().isEmpty()) {
-            try {
-                cloudinaryService.delete(banner.get().getimage_public_id());
-            } catch (IOException e) {
-                System.err.println("Error deleting image from Cloudinary: " + e.getMessage());
-            }
-        }
+        // The stored image is deleted by the outbox worker once this commits
+        imageDeletions.enqueue(banner.get().getimage_public_id());
 
         bannerRepository.deleteById(id);
         return true;
@@ -1,74 +1,156 @@
 package com.example.spring_postgres_blog.service;
 
-import com.example.spring_postgres_blog.controller.CartController;
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.dto.CartBulkRequest;
+import com.example.spring_postgres_blog.dto.CartTotals;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.*;
 import com.example.spring_postgres_blog.repository.*;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Per-user carts. Quantity changes go through {@link CartWriteBuffer}, reads are served from the
+ * {@link CacheConfig#CART_ITEMS} / {@link CacheConfig#CART_TOTALS} caches after flushing the user's
+ * pending changes; every cart write publishes an {@link EntityChangeEvent#CART} event that evicts both.
+ */
 @Service
 public class CartService {
-    private static final Logger logger = LoggerFactory.getLogger(CartController.class);
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+
+    private static final int MAX_BULK_LINES = 200;
 
     private final CartRepository cartRepo;
     private final ProductRepository productRepo;
     private final UserRepository userRepo;
+    private final CartWriteBuffer writeBuffer;
+    private final ApplicationEventPublisher publisher;
+    private final Cache itemsCache;
+    private final Cache totalsCache;
 
-    public CartService(CartRepository cartRepo, ProductRepository productRepo, UserRepository userRepo) {
+    public CartService(CartRepository cartRepo, ProductRepository productRepo, UserRepository userRepo,
+            CartWriteBuffer writeBuffer, ApplicationEventPublisher publisher, CacheManager cacheManager) {
         this.cartRepo = cartRepo;
         this.productRepo = productRepo;
         this.userRepo = userRepo;
+        this.writeBuffer = writeBuffer;
+        this.publisher = publisher;
+        this.itemsCache = cacheManager.getCache(CacheConfig.CART_ITEMS);
+        this.totalsCache = cacheManager.getCache(CacheConfig.CART_TOTALS);
     }
 
-    @Transactional
     public void addToCart(Long userId, Long productId, int quantity) {
-        User user = userRepo.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        Product product = productRepo.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartRepo.findByUserIdAndProductId(userId, productId);
-
-        if (existingItem.isPresent()) {
-            // Update quantity if item already exists
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            cartRepo.save(item);
-            logger.info("Updated existing cart item quantity");
-        } else {
-            // Create new cart item
-            CartItem item = new CartItem();
-            item.setUser(user);
-            item.setProduct(product);
-            item.setQuantity(quantity);
-            cartRepo.save(item);
-            logger.info("Created new cart item");
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Quantity must be at least 1");
+        }
+        try {
+            writeBuffer.add(userId, productId, quantity);
+        } catch (DataIntegrityViolationException e) {
+            // Khóa ngoại thay cho hai lần findById: chỉ tra lại khi insert đã thất bại
+            throw new RuntimeException(userRepo.existsById(userId) ? "Product not found" : "User not found");
+        }
+        logger.debug("Added {} x product {} for user {}", quantity, productId, userId);
+    }
+
+    /**
+     * Adds many lines to the cart with one multi-row upsert in one transaction, e.g. to merge a guest
+     * cart at login. Lines for the same product are summed.
+     *
+     * @return the resulting cart
+     * @throws IllegalArgumentException if the user is missing, there are no lines or more than
+     *                                  {@value #MAX_BULK_LINES}, or a line has no product or a quantity below 1
+     */
+    public List<CartItem> addAllToCart(Long userId, List<CartBulkRequest.Line> lines) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (lines == null || lines.isEmpty() || lines.size() > MAX_BULK_LINES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_BULK_LINES + " items are required");
+        }
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CartBulkRequest.Line line : lines) {
+            if (line == null || line.productId() == null || line.quantity() == null || line.quantity() < 1) {
+                throw new IllegalArgumentException("Each item needs a productId and a quantity of at least 1");
+            }
+            quantities.merge(line.productId(), line.quantity(), Integer::sum);
         }
+        try {
+            writeBuffer.addAll(userId, quantities);
+        } catch (DataIntegrityViolationException e) {
+            if (!userRepo.existsById(userId)) {
+                throw new RuntimeException("User not found");
+            }
+            Set<Long> missing = new TreeSet<>(quantities.keySet());
+            productRepo.findAllById(quantities.keySet()).forEach(product -> missing.remove(product.getId()));
+            throw new RuntimeException("Products not found: " + missing);
+        }
+        return getCartItemsByUserId(userId);
     }
 
     public List<CartItem> getCartItemsByUserId(Long userId) {
-        return cartRepo.findByUserId(userId);
+        writeBuffer.flush(userId);
+        return itemsCache.get(userId, () -> cartRepo.findByUserId(userId));
+    }
+
+    /**
+     * Line count and total quantity for the cart badge, without loading the items.
+     */
+    public CartTotals getTotals(Long userId) {
+        writeBuffer.flush(userId);
+        return totalsCache.get(userId, () -> {
+            CartTotals totals = cartRepo.getTotals(userId);
+            // Projection của Spring Data gắn với kết quả truy vấn, chép ra record để cache an toàn
+            return new Totals(totals.getCount(), totals.getQuantity());
+        });
     }
 
     @Transactional
     public void removeFromCart(Long cartItemId) {
+        Long userId = cartRepo.findUserIdById(cartItemId).orElse(null);
+        if (userId == null) {
+            return;
+        }
+        // Ghi nốt thay đổi đang chờ trước, nếu không lần flush sau sẽ cập nhật một dòng đã xóa
+        writeBuffer.flush(userId);
         cartRepo.deleteById(cartItemId);
+        publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.CART, userId, null,
+                EntityChangeEvent.Action.DELETED));
     }
 
-    @Transactional
     public void updateQuantity(Long cartItemId, Integer quantity) {
-        logger.info("Updating cart item " + cartItemId + " to quantity " + quantity);
-        CartItem cartItem = cartRepo.findById(cartItemId)
+        logger.debug("Updating cart item {} to quantity {}", cartItemId, quantity);
+        // Kiểm tra trước khi vào bộ đệm: lỗi lúc flush sẽ làm mất cả các thay đổi khác đang chờ
+        if (quantity == null || quantity < 1) {
+            throw new IllegalArgumentException("Quantity must be at least 1");
+        }
+        Long userId = cartRepo.findUserIdById(cartItemId)
                 .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        cartItem.setQuantity(quantity);
-        cartRepo.save(cartItem);
+        writeBuffer.setQuantity(userId, cartItemId, quantity);
+    }
+
+    private record Totals(long count, long quantity) implements CartTotals {
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getQuantity() {
+            return quantity;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces rapid cart quantity changes (the +/- buttons) into one write per user per flush interval,
+ * and serializes them with the immediate writes of the same user.
+ * <p>
+ * Only the latest absolute quantity per cart item is kept. Anything that reads or replaces the cart
+ * (cart reads, removal, checkout) calls {@link #flush(Long)} first, so a user always sees their own
+ * changes; other nodes may see them up to one interval late. Pending changes are lost if the process
+ * dies before the next flush.
+ */
+@Component
+public class CartWriteBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBuffer.class);
+
+    private static final String SET_QUANTITY = "UPDATE cart_items SET quantity = ? WHERE id = ? AND user_id = ?";
+    // Dựa trên unique (user_id, product_id): hai lần thêm đồng thời cùng sản phẩm không tạo hai dòng.
+    // Nhiều dòng đi chung một câu qua hai mảng song song (product id, số lượng)
+    private static final String UPSERT_ITEMS = """
+            INSERT INTO cart_items (user_id, product_id, quantity)
+            SELECT ?, line.product_id, line.quantity FROM unnest(?::bigint[], ?::int[]) AS line (product_id, quantity)
+            ON CONFLICT (user_id, product_id)
+            DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+            """;
+
+    // Khóa theo dải user id: lấy thay đổi ra và ghi xuống phải cùng một khóa, nếu không hai lần flush
+    // của cùng một user có thể commit ngược thứ tự và số lượng cũ đè lên số lượng mới
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, PendingCart> pending = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final Counter buffered;
+    private final Counter written;
+
+    public CartWriteBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher publisher, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.publisher = publisher;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Gauge.builder("cart.writes.pending.users", pending, Map::size)
+                .description("Users with cart changes buffered in memory")
+                .register(meterRegistry);
+        this.buffered = Counter.builder("cart.writes.buffered")
+                .description("Cart changes accepted into the buffer")
+                .register(meterRegistry);
+        this.written = Counter.builder("cart.writes.flushed")
+                .description("Cart rows written by flushes")
+                .register(meterRegistry);
+    }
+
+    public void setQuantity(Long userId, Long cartItemId, int quantity) {
+        pending.compute(userId, (id, cart) -> {
+            PendingCart target = cart != null ? cart : new PendingCart();
+            target.quantities.put(cartItemId, quantity);
+            return target;
+        });
+        buffered.increment();
+    }
+
+    /**
+     * Adds to the user's line for the product (creating it if needed) with a single upsert, written
+     * right away together with the user's pending changes so the caller learns about missing rows.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the user or product does not exist
+     */
+    public void add(Long userId, Long productId, int quantity) {
+        addAll(userId, Map.of(productId, quantity));
+    }
+
+    /**
+     * Like {@link #add}, for many products in one statement and one transaction.
+     *
+     * @param quantities quantity to add per product id; a product may appear only once
+     * @throws org.springframework.dao.DataIntegrityViolationException if the user or a product does not exist
+     */
+    public void addAll(Long userId, Map<Long, Integer> quantities) {
+        // Thứ tự product id cố định để hai lần gộp giỏ đồng thời khóa các dòng theo cùng thứ tự
+        Map<Long, Integer> lines = new TreeMap<>(quantities);
+        Long[] productIds = lines.keySet().toArray(Long[]::new);
+        Integer[] amounts = lines.values().toArray(Integer[]::new);
+        synchronized (lockFor(userId)) {
+            PendingCart cart = pending.remove(userId);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (cart != null) {
+                        write(userId, cart);
+                    }
+                    jdbcTemplate.update(UPSERT_ITEMS, userId, productIds, amounts);
+                    written.increment(productIds.length);
+                    publishChange(userId);
+                });
+            } catch (RuntimeException e) {
+                // Thay đổi đang chờ không có lỗi gì: trả lại bộ đệm cho lần flush sau
+                if (cart != null) {
+                    pending.merge(userId, cart, (newer, older) -> older.mergeNewer(newer));
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the user's pending changes, joining the caller's transaction if there is one.
+     */
+    public void flush(Long userId) {
+        synchronized (lockFor(userId)) {
+            PendingCart cart = pending.remove(userId);
+            if (cart != null) {
+                transactionTemplate.executeWithoutResult(status -> write(userId, cart));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval-ms:250}")
+    public void flushAll() {
+        for (Long userId : new ArrayList<>(pending.keySet())) {
+            try {
+                flush(userId);
+            } catch (RuntimeException e) {
+                // Dòng giỏ/sản phẩm đã bị xóa trong lúc chờ: bỏ thay đổi của user này, không chặn các user khác
+                logger.warn("Dropping buffered cart changes for user {}", userId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    private void write(Long userId, PendingCart cart) {
+        if (!cart.quantities.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(cart.quantities.size());
+            cart.quantities.forEach((cartItemId, quantity) -> args.add(new Object[] { quantity, cartItemId, userId }));
+            jdbcTemplate.batchUpdate(SET_QUANTITY, args);
+        }
+        written.increment(cart.quantities.size());
+        publishChange(userId);
+    }
+
+    private void publishChange(Long userId) {
+        publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.CART, userId, null,
+                EntityChangeEvent.Action.UPDATED));
+    }
+
+    private Object lockFor(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)];
+    }
+
+    // Chỉ bị sửa bên trong compute/merge của ConcurrentHashMap nên không cần đồng bộ thêm
+    private static final class PendingCart {
+        final Map<Long, Integer> quantities = new HashMap<>();
+
+        PendingCart mergeNewer(PendingCart newer) {
+            quantities.putAll(newer.quantities);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.dto.CollectionVersion;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import com.example.spring_postgres_blog.repository.BannerRepository;
+import com.example.spring_postgres_blog.repository.CategoryRepository;
+import com.example.spring_postgres_blog.repository.InformationRepository;
+import com.example.spring_postgres_blog.repository.PostRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cheap per-table version (row count + latest change time) used as the validator for list
+ * responses. Cached per entity type and evicted by CacheInvalidationRelay on every change,
+ * so a conditional GET for an unchanged list usually does not reach the database.
+ */
+@Service
+public class CollectionVersionService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private BannerRepository bannerRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private InformationRepository informationRepository;
+
+    @Cacheable(cacheNames = CacheConfig.COLLECTION_VERSIONS, key = "#entityType")
+    public CollectionVersion getVersion(String entityType) {
+        return switch (entityType) {
+            case EntityChangeEvent.PRODUCT -> productRepository.getCollectionVersion();
+            case EntityChangeEvent.POST -> postRepository.getCollectionVersion();
+            case EntityChangeEvent.BANNER -> bannerRepository.getCollectionVersion();
+            case EntityChangeEvent.CATEGORY -> categoryRepository.getCollectionVersion();
+            case EntityChangeEvent.INFORMATION -> informationRepository.getCollectionVersion();
+            default -> throw new IllegalArgumentException("Unknown entity type: " + entityType);
+        };
+    }
+}
@@ -1,13 +1,17 @@
 package com.example.spring_postgres_blog.service;
 
-import com.example.spring_postgres_blog.model.Post;
-import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.dto.PostSummary;
+import com.example.spring_postgres_blog.dto.ProductCard;
+import com.example.spring_postgres_blog.dto.ViewTotals;
 import com.example.spring_postgres_blog.repository.PostRepository;
 import com.example.spring_postgres_blog.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,41 +25,56 @@ public class DashboardService {
     @Autowired
     private PostRepository postRepository;
 
+    // Thời gian tối đa cho phép dùng lại snapshot trước khi tính lại đồng bộ
+    @Value("${app.dashboard.stats-max-age-ms:60000}")
+    private long statsMaxAgeMs;
+
+    private volatile StatsSnapshot snapshot;
+
     public Map<String, Object> getStats() {
-        Map<String, Object> stats = new HashMap<>();
+        StatsSnapshot current = snapshot;
+        if (current == null || current.isOlderThan(statsMaxAgeMs)) {
+            current = refreshStats();
+        }
+        return current.stats();
+    }
 
-        // Count totals
-        long totalProducts = productRepository.count();
-        long totalPosts = postRepository.count();
+    // Tính lại ở background để request dashboard chỉ đọc snapshot
+    @Scheduled(fixedDelayString = "${app.dashboard.stats-refresh-ms:15000}")
+    public void scheduledRefresh() {
+        refreshStats();
+    }
 
-        // Calculate total views
-        long totalProductViews = productRepository.findAll()
-                .stream()
-                .mapToLong(p -> p.getViews() != null ? p.getViews() : 0)
-                .sum();
+    private StatsSnapshot refreshStats() {
+        ViewTotals productTotals = productRepository.getViewTotals();
+        ViewTotals postTotals = postRepository.getViewTotals();
 
-        long totalPostViews = postRepository.findAll()
-                .stream()
-                .mapToLong(p -> p.getViews() != null ? p.getViews() : 0)
-                .sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalProducts", productTotals.getCount());
+        stats.put("totalPosts", postTotals.getCount());
+        stats.put("totalProductViews", productTotals.getViews());
+        stats.put("totalPostViews", postTotals.getViews());
 
-        stats.put("totalProducts", totalProducts);
-        stats.put("totalPosts", totalPosts);
-        stats.put("totalProductViews", totalProductViews);
-        stats.put("totalPostViews", totalPostViews);
+        StatsSnapshot fresh = new StatsSnapshot(Collections.unmodifiableMap(stats), System.currentTimeMillis());
+        snapshot = fresh;
+        return fresh;
+    }
 
-        return stats;
+    public List<ProductCard> getRecentProducts() {
+        return productRepository.findNewestCards(PageRequest.of(0, 5));
     }
 
-    public List<Product> getRecentProducts() {
-        return productRepository.findTop5ByOrderByCreatedAtDesc();
+    public List<PostSummary> getRecentPosts() {
+        return postRepository.findNewestSummaries(PageRequest.of(0, 5));
     }
 
-    public List<Post> getRecentPosts() {
-        return postRepository.findTop5Newest();
+    public List<ProductCard> getTopProductsByViews() {
+        return productRepository.findTopByViews(PageRequest.of(0, 5));
     }
 
-    public List<Product> getTopProductsByViews() {
-        return productRepository.findTop5ByOrderByViewsDesc();
+    private record StatsSnapshot(Map<String, Object> stats, long computedAt) {
+        boolean isOlderThan(long maxAgeMs) {
+            return System.currentTimeMillis() - computedAt > maxAgeMs;
+        }
     }
 }
\ No newline at end of file
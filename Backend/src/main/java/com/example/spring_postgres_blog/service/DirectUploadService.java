@@ -0,0 +1,137 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.dto.UploadConfirmRequest;
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import com.example.spring_postgres_blog.model.Asset;
+import com.example.spring_postgres_blog.model.Banner;
+import com.example.spring_postgres_blog.model.Post;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.repository.AssetRepository;
+import com.example.spring_postgres_blog.repository.BannerRepository;
+import com.example.spring_postgres_blog.repository.PostRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.storage.ImageVariant;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.UploadTarget;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Browser uploads that skip the API: {@link #sign} hands out signed upload parameters for the
+ * configured {@link StorageProvider},
+ * {@link #confirm} records the uploaded image on its entity once the upload response checks out.
+ * The backend never sees the image bytes.
+ */
+@Service
+public class DirectUploadService {
+
+    // Khóa theo public id tới hết transaction: hai lần xác nhận cùng lúc không cùng lọt qua bước kiểm tra
+    private static final String LOCK_PUBLIC_ID = "SELECT pg_advisory_xact_lock(hashtext(?))";
+    private static final String PUBLIC_ID_IN_USE = """
+            SELECT EXISTS (SELECT 1 FROM products WHERE image_public_id = ?
+                    UNION ALL SELECT 1 FROM posts WHERE image_public_id = ?
+                    UNION ALL SELECT 1 FROM banners WHERE image_public_id = ?
+                    UNION ALL SELECT 1 FROM assets WHERE image_public_id = ?)
+            """;
+
+    private final StorageProvider storageProvider;
+    private final ImageDeletionOutbox imageDeletions;
+    private final ProductRepository productRepository;
+    private final PostRepository postRepository;
+    private final BannerRepository bannerRepository;
+    private final AssetRepository assetRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public DirectUploadService(StorageProvider storageProvider, ImageDeletionOutbox imageDeletions,
+            ProductRepository productRepository, PostRepository postRepository, BannerRepository bannerRepository,
+            AssetRepository assetRepository, JdbcTemplate jdbcTemplate) {
+        this.storageProvider = storageProvider;
+        this.imageDeletions = imageDeletions;
+        this.productRepository = productRepository;
+        this.postRepository = postRepository;
+        this.bannerRepository = bannerRepository;
+        this.assetRepository = assetRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the target is unknown
+     */
+    public UploadTicket sign(String target) {
+        return storageProvider.signUpload(UploadTarget.parse(target));
+    }
+
+    /**
+     * Attaches a confirmed upload: replaces the image of the product/post with the given slug (the old
+     * image goes to the deletion outbox), or creates a new banner/asset. Each upload is attached once:
+     * confirming it again for the same product/post changes nothing.
+     *
+     * @return the saved entity
+     * @throws IllegalArgumentException if the target is unknown, the upload response does not verify, or
+     *                                  the image is already used by another entity
+     * @throws RuntimeException         if the product or post does not exist
+     */
+    @Transactional
+    public Object confirm(UploadConfirmRequest request) {
+        UploadTarget target = UploadTarget.parse(request.target());
+        if (!storageProvider.verifyUpload(target, request.publicId(), request.version(), request.signature())) {
+            throw new IllegalArgumentException("Upload could not be verified");
+        }
+        String publicId = request.publicId();
+        jdbcTemplate.query(LOCK_PUBLIC_ID, rs -> {
+        }, publicId);
+        String url = storageProvider.url(publicId, request.version());
+        List<ImageVariant> variants = storageProvider.variants(publicId, target);
+
+        switch (target) {
+            case PRODUCT -> {
+                Product product = productRepository.findBySlug(request.slug())
+                        .orElseThrow(() -> new RuntimeException("Product not found"));
+                if (publicId.equals(product.getImagePublicId())) {
+                    return product;
+                }
+                requireUnused(publicId);
+                imageDeletions.enqueue(product.getImagePublicId());
+                product.setImageUrl(url);
+                product.setImagePublicId(publicId);
+                product.setImageSrcset(ImageVariant.srcset(variants, false));
+                product.setImageSrcsetWebp(ImageVariant.srcset(variants, true));
+                return productRepository.save(product);
+            }
+            case POST -> {
+                Post post = postRepository.findBySlug(request.slug())
+                        .orElseThrow(() -> new RuntimeException("Post not found"));
+                if (publicId.equals(post.getImagePublicId())) {
+                    return post;
+                }
+                requireUnused(publicId);
+                imageDeletions.enqueue(post.getImagePublicId());
+                post.setImageUrl(url);
+                post.setImagePublicId(publicId);
+                post.setImageSrcset(ImageVariant.srcset(variants, false));
+                post.setImageSrcsetWebp(ImageVariant.srcset(variants, true));
+                return postRepository.save(post);
+            }
+            case BANNER -> {
+                requireUnused(publicId);
+                return bannerRepository.save(new Banner(url, publicId));
+            }
+            case ASSET -> {
+                requireUnused(publicId);
+                return assetRepository.save(new Asset(url, publicId));
+            }
+            default -> throw new IllegalArgumentException("Unknown upload target: " + target);
+        }
+    }
+
+    // Phản hồi upload đã ký có thể gửi lại: một ảnh gắn vào hai entity sẽ bị outbox xóa khi một bên đổi ảnh
+    private void requireUnused(String publicId) {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(PUBLIC_ID_IN_USE, Boolean.class,
+                publicId, publicId, publicId, publicId))) {
+            throw new IllegalArgumentException("Upload has already been used");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Idempotency-Key → order mapping for checkout, stored in idempotency_keys with a TTL.
+ * <p>
+ * A key is claimed with INSERT … ON CONFLICT inside the checkout transaction: a concurrent request
+ * with the same key blocks on the row until the first one commits or rolls back, so at most one
+ * order is created per key, and a failed checkout leaves the key free for the retry. Completed keys
+ * are cached locally after commit, so repeated retries do not query the table.
+ */
+@Service
+public class IdempotencyKeyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeyService.class);
+
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private static final String SELECT_ORDER_ID = """
+            SELECT order_id FROM idempotency_keys
+            WHERE user_id = ? AND idempotency_key = ? AND expires_at > ?
+            """;
+
+    // Khóa đã hết hạn nhưng chưa bị dọn thì được dùng lại như khóa mới
+    private static final String CLAIM = """
+            INSERT INTO idempotency_keys (user_id, idempotency_key, created_at, expires_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (user_id, idempotency_key) DO UPDATE
+                SET order_id = NULL, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.expires_at <= EXCLUDED.created_at
+            """;
+
+    private static final String COMPLETE =
+            "UPDATE idempotency_keys SET order_id = ? WHERE user_id = ? AND idempotency_key = ?";
+
+    private static final String PURGE_EXPIRED = """
+            DELETE FROM idempotency_keys WHERE ctid IN (
+                SELECT ctid FROM idempotency_keys WHERE expires_at <= ? LIMIT ?)
+            """;
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache cache;
+    private final Duration ttl;
+    private final Counter replays;
+
+    public IdempotencyKeyService(JdbcTemplate jdbcTemplate, CacheManager cacheManager, MeterRegistry meterRegistry,
+            @Value("${app.checkout.idempotency-ttl:24h}") Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = cacheManager.getCache(CacheConfig.IDEMPOTENCY_KEYS);
+        this.ttl = ttl;
+        this.replays = Counter.builder("checkout.idempotent.replays")
+                .description("Checkouts answered with the order of an earlier request with the same key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is blank or longer than {@value #MAX_KEY_LENGTH}
+     */
+    public static void validate(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * The order created by an earlier request with this key, if it committed and has not expired.
+     */
+    public Optional<Long> findOrderId(Long userId, String key) {
+        Long cached = cache.get(cacheKey(userId, key), Long.class);
+        if (cached != null) {
+            replays.increment();
+            return Optional.of(cached);
+        }
+        List<Long> rows = jdbcTemplate.queryForList(SELECT_ORDER_ID, Long.class, userId, key,
+                Timestamp.valueOf(LocalDateTime.now()));
+        Long orderId = rows.isEmpty() ? null : rows.get(0);
+        if (orderId == null) {
+            return Optional.empty();
+        }
+        cache.put(cacheKey(userId, key), orderId);
+        replays.increment();
+        return Optional.of(orderId);
+    }
+
+    /**
+     * Claims the key for the current transaction. Must run inside it.
+     *
+     * @return false if another request already holds the key (its transaction has committed by now)
+     */
+    public boolean claim(Long userId, String key) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update(CLAIM, userId, key, Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl))) == 1;
+    }
+
+    /**
+     * Records the order for a claimed key; it becomes visible (and cached) when the transaction commits.
+     */
+    public void complete(Long userId, String key, Long orderId) {
+        jdbcTemplate.update(COMPLETE, orderId, userId, key);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.put(cacheKey(userId, key), orderId);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.checkout.idempotency-purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int total = 0;
+        int deleted;
+        // Xóa theo lô để không giữ khóa lâu trên bảng khi có nhiều khóa hết hạn cùng lúc
+        do {
+            deleted = jdbcTemplate.update(PURGE_EXPIRED, now, PURGE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (total > 0) {
+            logger.info("Purged {} expired idempotency keys", total);
+        }
+    }
+
+    private static String cacheKey(Long userId, String key) {
+        return userId + ":" + key;
+    }
+}
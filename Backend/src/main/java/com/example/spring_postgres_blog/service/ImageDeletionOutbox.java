@@ -0,0 +1,155 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Transactional outbox for image deletions in the {@link StorageProvider}.
+ * <p>
+ * Services record the images of deleted or replaced entities with {@link #enqueue(String)} in the
+ * same transaction as the entity change, so an image is only deleted if that change commits and is
+ * never forgotten once it has. {@link #drain()} claims due rows in batches of {@value #BATCH_SIZE}
+ * (one deleteAll call each) with a short statement, calls the provider without holding a
+ * transaction, then removes the rows that are gone and reschedules the rest with exponential backoff.
+ * Several nodes can drain at once: claimed rows are skipped by the others until their lease runs out.
+ */
+@Component
+public class ImageDeletionOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(ImageDeletionOutbox.class);
+
+    // Giới hạn của delete_resources trên Cloudinary
+    static final int BATCH_SIZE = 100;
+    private static final int MAX_BATCHES_PER_RUN = 20;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    private static final String INSERT = """
+            INSERT INTO image_deletions (public_id, next_attempt_at, created_at) VALUES (?, ?, ?)
+            """;
+    // Lease: dòng đã nhận được đẩy next_attempt_at ra sau, nếu node chết giữa chừng thì tự được thử lại
+    private static final String CLAIM = """
+            UPDATE image_deletions SET attempts = attempts + 1, next_attempt_at = ?
+            WHERE id IN (SELECT id FROM image_deletions WHERE next_attempt_at <= ?
+                         ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+            RETURNING id, public_id, attempts
+            """;
+    private static final String DELETE_DONE = "DELETE FROM image_deletions WHERE id = ANY (?)";
+    private static final String RESCHEDULE = """
+            UPDATE image_deletions SET next_attempt_at = ?, last_error = ? WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageProvider storageProvider;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Counter deleted;
+    private final Counter failed;
+
+    public ImageDeletionOutbox(JdbcTemplate jdbcTemplate, StorageProvider storageProvider,
+            MeterRegistry meterRegistry,
+            @Value("${app.images.deletion-backoff:30s}") Duration baseBackoff,
+            @Value("${app.images.deletion-max-backoff:6h}") Duration maxBackoff) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageProvider = storageProvider;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.deleted = Counter.builder("images.deletions.deleted")
+                .description("Images removed from storage by the deletion outbox")
+                .register(meterRegistry);
+        this.failed = Counter.builder("images.deletions.failed")
+                .description("Outbox deletions that failed and were rescheduled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records an image to delete. Joins the caller's transaction, so call it in the transaction that
+     * removes the last reference to the image; outside a transaction the row is committed at once.
+     */
+    public void enqueue(String publicId) {
+        if (publicId == null || publicId.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT, publicId, now, now);
+    }
+
+    @Scheduled(fixedDelayString = "${app.images.deletion-interval-ms:10000}")
+    public void drain() {
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            // Dừng khi hết việc hoặc cả lô đều lỗi (kho ảnh đang có vấn đề, để lần chạy sau thử lại)
+            if (!drainBatch()) {
+                return;
+            }
+        }
+    }
+
+    private boolean drainBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Claimed> batch = jdbcTemplate.query(CLAIM,
+                (rs, rowNum) -> new Claimed(rs.getLong("id"), rs.getString("public_id"), rs.getInt("attempts")),
+                Timestamp.valueOf(now.plus(LEASE)), Timestamp.valueOf(now), BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        Set<String> publicIds = new LinkedHashSet<>();
+        batch.forEach(claimed -> publicIds.add(claimed.publicId()));
+        Set<String> gone;
+        String error = null;
+        try {
+            gone = storageProvider.deleteAll(publicIds);
+        } catch (IOException | RuntimeException e) {
+            gone = Set.of();
+            error = e.getMessage();
+            logger.warn("Image storage deleteAll failed for {} image(s)", publicIds.size(), e);
+        }
+
+        List<Long> done = new ArrayList<>();
+        List<Object[]> retries = new ArrayList<>();
+        for (Claimed claimed : batch) {
+            if (gone.contains(claimed.publicId())) {
+                done.add(claimed.id());
+            } else {
+                String reason = error != null ? error : "Not deleted by storage provider";
+                retries.add(new Object[] { Timestamp.valueOf(now.plus(backoff(claimed.attempts()))),
+                        reason.length() > MAX_ERROR_LENGTH ? reason.substring(0, MAX_ERROR_LENGTH) : reason,
+                        claimed.id() });
+            }
+        }
+        if (!done.isEmpty()) {
+            jdbcTemplate.update(DELETE_DONE, (Object) done.toArray(Long[]::new));
+            deleted.increment(done.size());
+        }
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate(RESCHEDULE, retries);
+            failed.increment(retries.size());
+        }
+        return !done.isEmpty() && batch.size() == BATCH_SIZE;
+    }
+
+    // 30s, 1m, 2m, ... tới tối đa maxBackoff
+    Duration backoff(int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        Duration delay = baseBackoff.multipliedBy(1L << doublings);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private record Claimed(long id, String publicId, int attempts) {
+    }
+}
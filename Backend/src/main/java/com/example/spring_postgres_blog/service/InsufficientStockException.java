@@ -0,0 +1,22 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.dto.StockShortage;
+
+import java.util.List;
+
+/**
+ * Thrown by checkout when at least one cart line is short on stock. The transaction is rolled back,
+ * so no stock is taken and the cart is left as it was; the caller gets every short line at once.
+ */
+public class InsufficientStockException extends RuntimeException {
+    private final List<StockShortage> shortages;
+
+    public InsufficientStockException(List<StockShortage> shortages) {
+        super("Insufficient stock for " + shortages.size() + " item(s)");
+        this.shortages = List.copyOf(shortages);
+    }
+
+    public List<StockShortage> getShortages() {
+        return shortages;
+    }
+}
@@ -1,82 +1,258 @@
 package com.example.spring_postgres_blog.service;
 
+import com.example.spring_postgres_blog.dto.CursorPage;
+import com.example.spring_postgres_blog.dto.OrderFilter;
+import com.example.spring_postgres_blog.dto.StockShortage;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
 import com.example.spring_postgres_blog.model.*;
 import com.example.spring_postgres_blog.repository.*;
+import com.example.spring_postgres_blog.util.CursorUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 public class OrderService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+
+    private static final String RESERVE_STOCK =
+            "UPDATE products SET stock = stock - ?, updated_at = CASE WHEN stock IS NULL THEN updated_at ELSE now() END"
+            + " WHERE id = ? AND ? > 0 AND (stock IS NULL OR stock >= ?)";
+    private static final String RESTOCK =
+            "UPDATE products SET stock = stock + ?, updated_at = now() WHERE id = ? AND stock IS NOT NULL";
+    private static final String LOCK_ORDER = "SELECT id FROM orders WHERE id = ? FOR UPDATE";
+    private static final String SELECT_STOCK = "SELECT id, stock FROM products WHERE id = ANY (?)";
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepo;
     private final CartRepository cartRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyKeyService idempotencyKeys;
+    private final CartWriteBuffer cartWriteBuffer;
+    private final ApplicationEventPublisher publisher;
 
-    public OrderService(OrderRepository orderRepo, CartRepository cartRepo) {
+    public OrderService(OrderRepository orderRepo, CartRepository cartRepo, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, IdempotencyKeyService idempotencyKeys,
+            CartWriteBuffer cartWriteBuffer, ApplicationEventPublisher publisher) {
         this.orderRepo = orderRepo;
         this.cartRepo = cartRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyKeys = idempotencyKeys;
+        this.cartWriteBuffer = cartWriteBuffer;
+        this.publisher = publisher;
     }
 
     public List<Order> getAllOrders() {
         return orderRepo.findAllByOrderByCreatedAtDesc();
     }
 
+    /**
+     * Keyset-paginated admin order listing, newest first by (createdAt, id).
+     *
+     * @param status optional exact status, case-insensitive
+     * @param userId optional owner
+     * @param from   optional first day (ISO date), inclusive
+     * @param to     optional last day (ISO date), inclusive
+     * @param query  optional substring of email or full name
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size   page size, clamped to [1, 100]
+     * @throws IllegalArgumentException on a malformed date or cursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getOrdersPage(String status, Long userId, String from, String to, String query,
+            String cursor, Integer size) {
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        OrderFilter filter;
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        try {
+            filter = new OrderFilter(
+                    status == null || status.isBlank() ? null : status.trim().toUpperCase(Locale.ROOT),
+                    userId,
+                    from == null || from.isBlank() ? null : LocalDate.parse(from).atStartOfDay(),
+                    to == null || to.isBlank() ? null : LocalDate.parse(to).plusDays(1).atStartOfDay(),
+                    query == null || query.isBlank() ? null : query.trim());
+            if (cursor != null && !cursor.isEmpty()) {
+                String[] position = CursorUtil.decode(cursor, 2);
+                afterCreatedAt = LocalDateTime.parse(position[0]);
+                afterId = Long.parseLong(position[1]);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date or cursor");
+        }
+
+        List<Long> ids = orderRepo.findIdsPage(filter, afterCreatedAt, afterId, limit + 1);
+        boolean hasNext = ids.size() > limit;
+        if (hasNext) {
+            ids = ids.subList(0, limit);
+        }
+        if (ids.isEmpty()) {
+            return new CursorPage<>(List.of(), null, false);
+        }
+
+        // Không fetch join + LIMIT trong cùng một câu (Hibernate sẽ phân trang trong bộ nhớ): lấy id trước, rồi nạp đồ thị
+        List<Order> orders = new ArrayList<>(orderRepo.findWithItemsByIdIn(ids));
+        orders.sort(Comparator.comparing(Order::getCreatedAt).thenComparing(Order::getId).reversed());
+
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreatedAt().toString(), String.valueOf(last.getId()));
+        }
+        return new CursorPage<>(orders, nextCursor, hasNext);
+    }
+
+    /**
+     * Checkout that is safe to retry: a request repeating an earlier Idempotency-Key gets the order
+     * that request created instead of a second one. Replays are answered from the key table (or its
+     * local cache) without opening the checkout transaction.
+     *
+     * @param idempotencyKey client-chosen key, scoped to the user; null checks out unconditionally
+     * @throws IllegalArgumentException if the key is malformed
+     * @throws IllegalStateException    if a request with the same key is still being processed
+     */
+    public Order checkout(Long userId, String idempotencyKey, String fullName, String email, String phone,
+            String shippingAddress) {
+        // Ghi bộ đệm giỏ ngoài transaction checkout để thay đổi không mất nếu checkout rollback
+        cartWriteBuffer.flush(userId);
+        if (idempotencyKey == null) {
+            return transactionTemplate.execute(
+                    status -> createOrderFromCart(userId, fullName, email, phone, shippingAddress));
+        }
+        IdempotencyKeyService.validate(idempotencyKey);
+        Optional<Long> previous = idempotencyKeys.findOrderId(userId, idempotencyKey);
+        if (previous.isPresent()) {
+            return getOrderById(previous.get());
+        }
+
+        return transactionTemplate.execute(status -> {
+            if (!idempotencyKeys.claim(userId, idempotencyKey)) {
+                // Request cùng khóa vừa commit trong lúc chờ khóa dòng: trả về đơn của nó
+                return idempotencyKeys.findOrderId(userId, idempotencyKey)
+                        .map(this::getOrderById)
+                        .orElseThrow(() -> new IllegalStateException("Checkout with this Idempotency-Key is in progress"));
+            }
+            Order order = createOrderFromCart(userId, fullName, email, phone, shippingAddress);
+            idempotencyKeys.complete(userId, idempotencyKey, order.getId());
+            return order;
+        });
+    }
+
+    /**
+     * Turns the user's cart into a PENDING order and takes the ordered quantities out of stock.
+     * <p>
+     * Stock is reserved with one conditional UPDATE per product, sent as a single JDBC batch in
+     * product id order, so concurrent checkouts lock rows in the same order and cannot deadlock.
+     * A NULL stock means the product is not stock-tracked and always succeeds. For tracked products
+     * updated_at moves with the stock, and a PRODUCT change is published for each of them after commit.
+     *
+     * @throws InsufficientStockException listing every short line; nothing is written
+     * @throws IllegalArgumentException   if a cart line has a quantity below 1
+     */
     @Transactional
     public Order createOrderFromCart(Long userId, String fullName, String email, String phone, String shippingAddress) {
+        // Số lượng vừa bấm có thể còn nằm trong bộ đệm: ghi trong cùng transaction trước khi đọc giỏ
+        cartWriteBuffer.flush(userId);
         List<CartItem> items = cartRepo.findByUserId(userId);
-
         if (items.isEmpty()) {
-            System.err.println("ERROR: Cart is empty!");
             throw new RuntimeException("Cart is empty");
         }
 
-        // Log cart items
+        // Gộp theo product id (TreeMap giữ thứ tự tăng dần cho batch UPDATE)
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
         for (CartItem item : items) {
-            System.out.println("Cart item: " + item.getProduct().getTitle() +
-                    " x" + item.getQuantity() +
-                    " = $" + (item.getProduct().getPrice() * item.getQuantity()));
+            if (item.getQuantity() < 1) {
+                // Dòng âm sẽ cộng ngược vào kho và cho ra tổng tiền âm
+                throw new IllegalArgumentException("Invalid quantity for product " + item.getProduct().getId());
+            }
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            products.put(item.getProduct().getId(), item.getProduct());
         }
 
-        // Calculate total
-        double total = items.stream()
-                .mapToDouble(i -> i.getProduct().getPrice() * i.getQuantity())
-                .sum();
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<Object[]> args = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            int quantity = quantities.get(productId);
+            args.add(new Object[] { quantity, productId, quantity, quantity });
+        }
+        int[] updated = jdbcTemplate.batchUpdate(RESERVE_STOCK, args);
 
-        try {
-            // Create Order
-            Order order = new Order();
-            User user = items.get(0).getUser();
-            order.setUser(user);
-            order.setFullName(fullName);
-            order.setEmail(email);
-            order.setPhone(phone);
-            order.setShippingAddress(shippingAddress);
-            order.setTotalAmount(total);
-            order.setStatus("PENDING");
-
-            // Create OrderItems from CartItems (DON'T set order yet)
-            List<OrderItem> orderItems = new ArrayList<>();
-            for (CartItem cartItem : items) {
-                OrderItem orderItem = new OrderItem();
-                // Don't set order here - let setOrderItems handle it
-                orderItem.setProduct(cartItem.getProduct());
-                orderItem.setQuantity(cartItem.getQuantity());
-                orderItem.setPrice(cartItem.getProduct().getPrice());
-                orderItems.add(orderItem);
+        List<Long> shortIds = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                shortIds.add(productIds.get(i));
             }
+        }
+        if (!shortIds.isEmpty()) {
+            throw new InsufficientStockException(shortages(shortIds, quantities, products));
+        }
 
-            order.setOrderItems(orderItems);
+        Order order = new Order();
+        order.setUser(items.get(0).getUser());
+        order.setFullName(fullName);
+        order.setEmail(email);
+        order.setPhone(phone);
+        order.setShippingAddress(shippingAddress);
+        order.setStatus("PENDING");
 
-            Order saved = orderRepo.save(order);
-            // Clear cart
-            cartRepo.deleteAll(items);
-            return saved;
+        double total = 0;
+        for (Long productId : productIds) {
+            Product product = products.get(productId);
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProduct(product);
+            orderItem.setQuantity(quantities.get(productId));
+            orderItem.setPrice(product.getPrice());
+            order.addOrderItem(orderItem);
+            total += product.getPrice() * quantities.get(productId);
+        }
+        order.setTotalAmount(total);
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to create order: " + e.getMessage(), e);
+        // Flush ngay: order + items đi thành batch, và khóa idempotency tham chiếu tới order id
+        Order saved = orderRepo.saveAndFlush(order);
+        cartRepo.deleteByUserId(userId);
+        publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.CART, userId, null,
+                EntityChangeEvent.Action.DELETED));
+        // Sản phẩm không đếm kho không đổi gì, không cần làm mới cache của chúng
+        publishStockChanged(productIds.stream().filter(id -> products.get(id).getStock() != null).toList(),
+                products);
+        logger.info("Order {} created for user {} with {} product(s)", saved.getId(), userId, productIds.size());
+        return saved;
+    }
+
+    // Các dòng thiếu chưa bị UPDATE nên stock đọc lại ở đây là stock thật tại thời điểm checkout
+    private List<StockShortage> shortages(List<Long> shortIds, Map<Long, Integer> quantities,
+            Map<Long, Product> products) {
+        Map<Long, Integer> available = new HashMap<>();
+        jdbcTemplate.query(SELECT_STOCK, rs -> {
+            available.put(rs.getLong("id"), rs.getInt("stock"));
+        }, (Object) shortIds.toArray(Long[]::new));
+        List<StockShortage> shortages = new ArrayList<>(shortIds.size());
+        for (Long productId : shortIds) {
+            shortages.add(new StockShortage(productId, products.get(productId).getTitle(), quantities.get(productId),
+                    available.getOrDefault(productId, 0)));
         }
+        return shortages;
     }
 
     public List<Order> getOrdersByUserId(Long userId) {
@@ -85,22 +261,74 @@ public class OrderService {
     }
 
     public Order getOrderById(Long orderId) {
-        return orderRepo.findById(orderId)
+        return orderRepo.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
     }
 
+    /**
+     * Setting an order to CANCELLED gives its reserved stock back in the same transaction.
+     *
+     * @throws RuntimeException if the order is already cancelled and the new status is not
+     */
+    @Transactional
     public Order updateOrderStatus(Long orderId, String status) {
-        Order order = getOrderById(orderId);
+        Order order = lockOrder(orderId);
+        boolean cancelled = "CANCELLED".equals(order.getStatus());
+        if (cancelled && !"CANCELLED".equals(status)) {
+            // Hàng đã trả về kho lúc hủy, mở lại đơn sẽ bán số hàng đó hai lần
+            throw new RuntimeException("Cannot change status of a cancelled order");
+        }
+        if (!cancelled && "CANCELLED".equals(status)) {
+            restock(order);
+        }
         order.setStatus(status);
         return orderRepo.save(order);
     }
 
+    @Transactional
     public void cancelOrder(Long orderId) {
-        Order order = getOrderById(orderId);
+        Order order = lockOrder(orderId);
         if (!"PENDING".equals(order.getStatus())) {
             throw new RuntimeException("Cannot cancel order with status: " + order.getStatus());
         }
+        restock(order);
         order.setStatus("CANCELLED");
         orderRepo.save(order);
     }
-}
\ No newline at end of file
+
+    // Khóa dòng trước khi đọc trạng thái: hai lần hủy cùng lúc không được trả kho hai lần
+    private Order lockOrder(Long orderId) {
+        jdbcTemplate.query(LOCK_ORDER, rs -> {
+        }, orderId);
+        return getOrderById(orderId);
+    }
+
+    // Cùng thứ tự product id với RESERVE_STOCK để không deadlock với checkout đang chạy
+    private void restock(Order order) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            products.put(item.getProduct().getId(), item.getProduct());
+        }
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> args.add(new Object[] { quantity, productId }));
+        int[] updated = jdbcTemplate.batchUpdate(RESTOCK, args);
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<Long> restocked = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                restocked.add(productIds.get(i));
+            }
+        }
+        publishStockChanged(restocked, products);
+    }
+
+    // UPDATE stock đi thẳng qua JDBC nên entity listener không thấy: tự báo cho cache và ETag
+    private void publishStockChanged(List<Long> productIds, Map<Long, Product> products) {
+        for (Long productId : productIds) {
+            publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.PRODUCT, productId,
+                    products.get(productId).getSlug(), EntityChangeEvent.Action.UPDATED));
+        }
+    }
+}
@@ -1,86 +1,136 @@
 package com.example.spring_postgres_blog.service;
 
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.ViewCounterConfig;
+import com.example.spring_postgres_blog.dto.PostSummary;
 import com.example.spring_postgres_blog.model.Post;
 import com.example.spring_postgres_blog.repository.PostRepository;
-import jakarta.transaction.Transactional;
+import com.example.spring_postgres_blog.search.InMemorySearchIndex;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.example.spring_postgres_blog.storage.UploadTarget;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.example.spring_postgres_blog.model.PostView;
-import com.example.spring_postgres_blog.model.Product;
-import com.example.spring_postgres_blog.repository.PostViewRepository;
 
 import java.time.LocalDateTime;
 
+/**
+ * Posts and their cover images. Nothing here runs in a class-wide transaction: storage uploads may take
+ * seconds and must not hold a pooled connection, so writes upload first and then persist in a
+ * short {@link TransactionTemplate} transaction.
+ */
 @Service
-@Transactional
 public class PostService {
+    private static final int MAX_SEARCH_RESULTS = 100;
 
     private final PostRepository postRepository;
-    private final PostViewRepository postViewRepository;
-    private final CloudinaryService cloudinaryService;
-
-    public PostService(PostRepository postRepository, PostViewRepository postViewRepository,
-            CloudinaryService cloudinaryService) {
+    private final ViewCounter postViewCounter;
+    private final StorageProvider storageProvider;
+    private final ObjectProvider<InMemorySearchIndex> searchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageDeletionOutbox imageDeletions;
+
+    public PostService(PostRepository postRepository,
+            @Qualifier(ViewCounterConfig.POST_VIEWS) ViewCounter postViewCounter,
+            StorageProvider storageProvider, ObjectProvider<InMemorySearchIndex> searchIndex,
+            TransactionTemplate transactionTemplate, ImageDeletionOutbox imageDeletions) {
         this.postRepository = postRepository;
-        this.postViewRepository = postViewRepository;
-        this.cloudinaryService = cloudinaryService;
+        this.postViewCounter = postViewCounter;
+        this.storageProvider = storageProvider;
+        this.searchIndex = searchIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.imageDeletions = imageDeletions;
     }
 
-    public List<Post> getAllPosts() {
-        return postRepository.findAll();
+    public List<PostSummary> getAllPosts() {
+        return postRepository.findAllSummaries();
     }
 
+    @Cacheable(cacheNames = CacheConfig.POST_BY_SLUG, key = "#slug", unless = "#result == null")
     public Optional<Post> getPostBySlug(String slug) {
         return postRepository.findBySlug(slug);
     }
 
-    public List<Post> searchPosts(String query, String category) {
+    public List<PostSummary> searchPosts(String query, String category) {
         if (category != null && !category.isEmpty()) {
-            return postRepository.findByCategory(category);
+            return postRepository.findSummariesByCategory(category);
         } else if (query != null && !query.isEmpty()) {
+            InMemorySearchIndex index = searchIndex.getIfAvailable();
+            if (index != null && index.isReady()) {
+                return findAllInOrder(index.searchPosts(query, MAX_SEARCH_RESULTS));
+            }
             return postRepository.searchByTitleOrDescription(query);
         } else {
-            return postRepository.findAll();
+            return postRepository.findAllSummaries();
         }
     }
 
-    public List<Post> getPostByIds(String ids) {
+    private List<PostSummary> findAllInOrder(long[] ids) {
+        Map<Long, PostSummary> byId = postRepository.findSummariesByIdIn(Arrays.stream(ids).boxed().toList())
+                .stream()
+                .collect(Collectors.toMap(PostSummary::getId, Function.identity()));
+        return Arrays.stream(ids)
+                .mapToObj(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public List<PostSummary> getPostByIds(String ids) {
         List<Long> postIds = Arrays.stream(ids.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(Long::parseLong)
                 .collect(Collectors.toList());
 
-        return postRepository.findAllById(postIds);
+        return postRepository.findSummariesByIdIn(postIds);
     }
 
-    public List<Post> getPostsByCategory(String category) {
-        return postRepository.findByCategory(category);
+    public List<PostSummary> getPostsByCategory(String category) {
+        return postRepository.findSummariesByCategory(category);
     }
 
-    public List<Post> getPostsNewest() {
-        return postRepository.findTop5Newest();
+    @Cacheable(CacheConfig.NEWEST_POSTS)
+    public List<PostSummary> getPostsNewest() {
+        return postRepository.findNewestSummaries(PageRequest.of(0, 5));
     }
 
-    public Post getTop1Blog() {
-        return postRepository.findTop1Newest();
+    @Cacheable(cacheNames = CacheConfig.TOP_POST, unless = "#result == null")
+    public PostSummary getTop1Blog() {
+        return postRepository.findNewestSummaries(PageRequest.of(0, 1)).stream().findFirst().orElse(null);
     }
 
+    /**
+     * Uploads the image first, outside any transaction, then saves the post in a short transaction.
+     * If the save fails the upload is queued for deletion again.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.NEWEST_POSTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.TOP_POST, allEntries = true) })
     public Post createPost(Post post, MultipartFile image) throws IOException {
         post.setViews(0);
         post.setCreatedAt(LocalDateTime.now());
 
-        // Handle image upload if provided
-        if (image != null && !image.isEmpty()) {
-            Map uploadResult = cloudinaryService.uploadWithOptions(image, "posts", 1200, 800);
-            post.setImageUrl((String) uploadResult.get("secure_url"));
-            post.setImagePublicId((String) uploadResult.get("public_id"));
+        StoredImage stored = upload(image);
+        if (stored != null) {
+            post.setImageUrl(stored.url());
+            post.setImagePublicId(stored.publicId());
+            post.setImageSrcset(stored.srcset());
+            post.setImageSrcsetWebp(stored.webpSrcset());
         }
 
         // Khởi tạo 1 bản ghi view cho hôm nay = 0
@@ -93,81 +143,91 @@ public class PostService {
         viewsList.add(viewToday);
         post.setViewsPerDay(viewsList);
 
-        return postRepository.save(post);
+        try {
+            return transactionTemplate.execute(status -> postRepository.save(post));
+        } catch (RuntimeException e) {
+            deleteOrphan(stored);
+            throw e;
+        }
     }
 
+    /**
+     * Same two phases as {@link #createPost}; the replaced image is queued for deletion in the
+     * transaction that stores the new one.
+     */
+    // Slug có thể bị đổi nên xóa cả slug cũ lẫn slug mới
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POST_BY_SLUG, key = "#slug"),
+            @CacheEvict(cacheNames = CacheConfig.POST_BY_SLUG, key = "#newPost.slug", condition = "#newPost.slug != null"),
+            @CacheEvict(cacheNames = CacheConfig.NEWEST_POSTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.TOP_POST, allEntries = true) })
     public Post updatePost(String slug, Post newPost, MultipartFile image) throws IOException {
-        return postRepository.findBySlug(slug).map(post -> {
-            post.setTitle(newPost.getTitle());
-            post.setDescription(newPost.getDescription());
-            post.setCategory(newPost.getCategory());
-            post.setContent(newPost.getContent());
-            post.setSlug(newPost.getSlug());
-            post.setMetaTitle(newPost.getMetaTitle());
-            post.setMetaDescription(newPost.getMetaDescription());
-            post.setMetaKeywords(newPost.getMetaKeywords());
-            post.setMetaURL(newPost.getMetaURL());
-
-            // Handle image upload if provided
-            if (image != null && !image.isEmpty()) {
-                try {
-                    // Delete old image if exists
-                    if (post.getImagePublicId() != null && !post.getImagePublicId().isEmpty()) {
-                        cloudinaryService.delete(post.getImagePublicId());
-                    }
-
-                    // Upload new image
-                    Map uploadResult = cloudinaryService.uploadWithOptions(image, "posts", 1200, 800);
-                    post.setImageUrl((String) uploadResult.get("secure_url"));
-                    post.setImagePublicId((String) uploadResult.get("public_id"));
-                } catch (IOException e) {
-                    throw new RuntimeException("Error uploading image: " + e.getMessage());
+        StoredImage stored = upload(image);
+        try {
+            return transactionTemplate.execute(status -> postRepository.findBySlug(slug).map(post -> {
+                post.setTitle(newPost.getTitle());
+                post.setDescription(newPost.getDescription());
+                post.setCategory(newPost.getCategory());
+                post.setContent(newPost.getContent());
+                post.setSlug(newPost.getSlug());
+                post.setMetaTitle(newPost.getMetaTitle());
+                post.setMetaDescription(newPost.getMetaDescription());
+                post.setMetaKeywords(newPost.getMetaKeywords());
+                post.setMetaURL(newPost.getMetaURL());
+
+                if (stored != null) {
+                    imageDeletions.enqueue(post.getImagePublicId());
+                    post.setImageUrl(stored.url());
+                    post.setImagePublicId(stored.publicId());
+                    post.setImageSrcset(stored.srcset());
+                    post.setImageSrcsetWebp(stored.webpSrcset());
                 }
-            }
 
-            return postRepository.save(post);
-        }).orElseThrow(() -> new RuntimeException("Post not found"));
+                return postRepository.save(post);
+            }).orElseThrow(() -> new RuntimeException("Post not found")));
+        } catch (RuntimeException e) {
+            deleteOrphan(stored);
+            throw e;
+        }
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POST_BY_SLUG, key = "#slug"),
+            @CacheEvict(cacheNames = CacheConfig.NEWEST_POSTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.TOP_POST, allEntries = true) })
     public void deletePost(String slug) {
-        postRepository.findBySlug(slug).ifPresent(post -> {
-            // Delete image from Cloudinary if exists
-            if (post.getImagePublicId() != null && !post.getImagePublicId().isEmpty()) {
-                try {
-                    cloudinaryService.delete(post.getImagePublicId());
-                } catch (IOException e) {
-                    System.err.println("Error deleting image from Cloudinary: " + e.getMessage());
-                }
-            }
+        // Ảnh chỉ bị xóa (bởi outbox) nếu xóa bài commit thành công
+        transactionTemplate.executeWithoutResult(status -> postRepository.findBySlug(slug).ifPresent(post -> {
+            imageDeletions.enqueue(post.getImagePublicId());
             postRepository.delete(post);
-        });
+        }));
     }
 
-    public Post increaseView(String slug) {
-        Post post = postRepository.findBySlug(slug)
-                .orElseThrow(() -> new RuntimeException("Post not found"));
-
-        post.setViews(post.getViews() + 1);
-        LocalDate today = LocalDate.now();
-
-        // Tìm PostView hôm nay
-        PostView todayView = post.getViewsPerDay().stream()
-                .filter(v -> v.getDate().equals(today))
-                .findFirst()
-                .orElse(null);
-
-        if (todayView == null) {
-            todayView = new PostView();
-            todayView.setDate(today);
-            todayView.setViewCount(1);
-            todayView.setPost(post);
-            post.getViewsPerDay().add(todayView);
-        } else {
-            todayView.setViewCount(todayView.getViewCount() + 1);
+    private StoredImage upload(MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        return storageProvider.store(image, UploadTarget.POST);
+    }
+
+    // Transaction đã rollback: ghi vào outbox ngoài transaction (commit ngay)
+    private void deleteOrphan(StoredImage stored) {
+        if (stored != null) {
+            imageDeletions.enqueue(stored.publicId());
         }
+    }
 
-        // Lưu cả Post và PostView
-        postViewRepository.save(todayView);
-        return postRepository.save(post);
+    /**
+     * @throws IllegalArgumentException if the slug is blank
+     * @throws RuntimeException         if no post has this slug
+     */
+    public void increaseView(String slug) {
+        if (slug == null || slug.isBlank()) {
+            throw new IllegalArgumentException("Slug is required");
+        }
+        // Buffered in memory; the counter flushes posts.views and post_views in batches
+        if (!postViewCounter.increment(slug)) {
+            throw new RuntimeException("Post not found");
+        }
     }
 }
\ No newline at end of file
@@ -1,56 +1,238 @@
 package com.example.spring_postgres_blog.service;
 
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.ViewCounterConfig;
+import com.example.spring_postgres_blog.dto.CursorPage;
+import com.example.spring_postgres_blog.dto.ProductCard;
+import com.example.spring_postgres_blog.dto.SearchHit;
 import com.example.spring_postgres_blog.model.Product;
 import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.search.InMemorySearchIndex;
+import com.example.spring_postgres_blog.search.SuggestionService;
+import com.example.spring_postgres_blog.search.SuggestionTrie;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.example.spring_postgres_blog.storage.UploadTarget;
+import com.example.spring_postgres_blog.util.CursorUtil;
+import com.example.spring_postgres_blog.util.TextNormalizer;
 
 import java.util.Arrays;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Vị trí bắt đầu của trang đầu tiên, đứng trước mọi giá trị thật khi sắp xếp giảm dần
+    private static final LocalDateTime FIRST_PAGE_CREATED_AT = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final double FIRST_PAGE_DISCOUNT = Double.MAX_VALUE;
+    private static final float FIRST_PAGE_RANK = Float.MAX_VALUE;
+
     @Autowired
     private ProductRepository productRepository;
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    @Autowired
+    @Qualifier(ViewCounterConfig.PRODUCT_VIEWS)
+    private ViewCounter productViewCounter;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private ImageDeletionOutbox imageDeletions;
+
+    @Autowired
+    private StorageProvider storageProvider;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Chỉ có khi app.search.engine=memory
+    @Autowired
+    private ObjectProvider<InMemorySearchIndex> searchIndex;
+
+    public List<ProductCard> getAllProducts() {
+        return productRepository.findAllCards();
     }
 
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_BY_SLUG, key = "#slug", unless = "#result == null")
     public Optional<Product> getProductBySlug(String slug) {
         return productRepository.findBySlug(slug);
     }
 
-    public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategoryIgnoreCase(category);
+    public List<ProductCard> getProductsByCategory(String category) {
+        return productRepository.findCardsByCategory(category);
     }
 
-    public List<Product> searchProduct(String query, String category) {
+    public List<ProductCard> searchProduct(String query, String category) {
         if (category != null && !category.isEmpty()) {
-            return productRepository.findByCategoryIgnoreCase(category);
-        } else if (query != null && !query.isEmpty()) {
-            return productRepository.searchByQuery(query);
+            return productRepository.findCardsByCategory(category);
+        } else if (query != null && !query.isBlank()) {
+            InMemorySearchIndex index = searchIndex.getIfAvailable();
+            if (index != null && index.isReady()) {
+                return findAllInOrder(Arrays.stream(index.searchProducts(query, MAX_PAGE_SIZE)).boxed().toList());
+            }
+            // Kết quả theo độ liên quan, tối đa một trang lớn nhất
+            return getProductsPage("relevance", null, query, null, MAX_PAGE_SIZE).getItems();
         } else {
-            return productRepository.findAll();
+            return productRepository.findAllCards();
+        }
+    }
+
+    /**
+     * Keyset-paginated product listing.
+     *
+     * @param sort     "relevance" (default when searching), "newest" (createdAt, id) or "discount" (discount, id),
+     *                 all descending
+     * @param category optional exact category filter
+     * @param query    optional full-text query, ignored when category is set
+     * @param cursor   nextCursor of the previous page, null for the first page
+     * @param size     page size, clamped to [1, 100]
+     * @throws IllegalArgumentException on an unknown sort or a malformed cursor
+     */
+    public CursorPage<ProductCard> getProductsPage(String sort, String category, String query, String cursor,
+            Integer size) {
+        boolean hasCategory = category != null && !category.isEmpty();
+        boolean hasQuery = !hasCategory && query != null && !query.isBlank();
+        String sortKey = sort == null || sort.isEmpty()
+                ? (hasQuery ? "relevance" : "newest")
+                : sort.toLowerCase(Locale.ROOT);
+        if (!sortKey.equals("newest") && !sortKey.equals("discount")
+                && !(sortKey.equals("relevance") && hasQuery)) {
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Pageable pageable = PageRequest.of(0, limit);
+
+        String tsQuery = hasQuery ? toPrefixTsQuery(query) : null;
+        if (hasQuery && tsQuery.isEmpty()) {
+            return new CursorPage<>(List.of(), null, false);
+        }
+
+        String[] position = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            position = CursorUtil.decode(cursor, 3);
+            if (!position[0].equals(sortKey)) {
+                throw new IllegalArgumentException("Cursor does not match sort " + sortKey);
+            }
+        }
+
+        try {
+            long id = position == null ? Long.MAX_VALUE : Long.parseLong(position[2]);
+            if (sortKey.equals("relevance")) {
+                float rank = position == null ? FIRST_PAGE_RANK : Float.parseFloat(position[1]);
+                return searchByRelevance(tsQuery, rank, id, limit);
+            }
+
+            Slice<ProductCard> slice;
+            if (sortKey.equals("discount")) {
+                double discount = position == null ? FIRST_PAGE_DISCOUNT : Double.parseDouble(position[1]);
+                if (hasCategory) {
+                    slice = productRepository.findByCategoryAndDiscountAfter(category, discount, id, pageable);
+                } else if (hasQuery) {
+                    slice = productRepository.searchByDiscountAfter(tsQuery, discount, id, pageable);
+                } else {
+                    slice = productRepository.findByDiscountAfter(discount, id, pageable);
+                }
+            } else {
+                LocalDateTime createdAt = position == null ? FIRST_PAGE_CREATED_AT : LocalDateTime.parse(position[1]);
+                if (hasCategory) {
+                    slice = productRepository.findNewestByCategoryAfter(category, createdAt, id, pageable);
+                } else if (hasQuery) {
+                    slice = productRepository.searchNewestAfter(tsQuery, createdAt, id, pageable);
+                } else {
+                    slice = productRepository.findNewestAfter(createdAt, id, pageable);
+                }
+            }
+
+            List<ProductCard> items = slice.getContent();
+            String nextCursor = null;
+            if (slice.hasNext() && !items.isEmpty()) {
+                ProductCard last = items.get(items.size() - 1);
+                String value = sortKey.equals("discount")
+                        ? String.valueOf(last.getDiscount() != null ? last.getDiscount() : 0.0)
+                        : last.getCreatedAt().toString();
+                nextCursor = CursorUtil.encode(sortKey, value, String.valueOf(last.getId()));
+            }
+            return new CursorPage<>(items, nextCursor, nextCursor != null);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
     }
 
-    public List<Product> getProductsByIds(String ids) {
+    // Lấy id + điểm từ index trước, sau đó load thẻ sản phẩm theo khóa chính và giữ nguyên thứ tự
+    private CursorPage<ProductCard> searchByRelevance(String tsQuery, float rank, long id, int limit) {
+        List<SearchHit> hits = productRepository.searchRankedAfter(tsQuery, rank, id, limit + 1);
+        boolean hasNext = hits.size() > limit;
+        if (hasNext) {
+            hits = hits.subList(0, limit);
+        }
+
+        List<ProductCard> items = findAllInOrder(hits.stream().map(SearchHit::getId).toList());
+
+        String nextCursor = null;
+        if (hasNext) {
+            SearchHit last = hits.get(hits.size() - 1);
+            nextCursor = CursorUtil.encode("relevance", String.valueOf(last.getRank()), String.valueOf(last.getId()));
+        }
+        return new CursorPage<>(items, nextCursor, hasNext);
+    }
+
+    // IN (...) không giữ thứ tự, sắp lại theo danh sách id đã xếp hạng
+    private List<ProductCard> findAllInOrder(List<Long> ids) {
+        Map<Long, ProductCard> byId = productRepository.findCardsByIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(ProductCard::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // "giày chạy" -> "giay:* & chay:*", bỏ dấu giống hệt lúc ghi search_text
+    private String toPrefixTsQuery(String query) {
+        return Arrays.stream(TextNormalizer.fold(query).split(" "))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    public List<ProductCard> getProductsByIds(String ids) {
         List<Long> productIds = Arrays.stream(ids.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(Long::parseLong)
                 .collect(Collectors.toList());
 
-        return productRepository.findAllById(productIds);
+        return productRepository.findCardsByIdIn(productIds);
     }
 
     private String toSlug(String input) {
@@ -60,7 +242,19 @@ public class ProductService {
         return slug;
     }
 
-    public Product createProduct(Product product) {
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.TOP_DISCOUNT_PRODUCTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.DISCOUNT_PRODUCTS, allEntries = true) })
+    public Product createProduct(Product product, MultipartFile image) throws IOException {
+        // Upload trước, ngoài transaction; lưu lỗi thì ảnh vừa upload vào outbox để xóa
+        StoredImage stored = store(image);
+        if (stored != null) {
+            product.setImageUrl(stored.url());
+            product.setImagePublicId(stored.publicId());
+            product.setImageSrcset(stored.srcset());
+            product.setImageSrcsetWebp(stored.webpSrcset());
+        }
+
         String baseSlug = toSlug(product.getTitle());
         String slug = baseSlug;
         int count = 1;
@@ -71,45 +265,110 @@ public class ProductService {
         }
 
         product.setSlug(slug);
-        return productRepository.save(product);
+        if (product.getViews() == null) {
+            product.setViews(0);
+        }
+        try {
+            return productRepository.save(product);
+        } catch (RuntimeException e) {
+            deleteOrphan(stored);
+            throw e;
+        }
     }
 
-    public Product updateProduct(String slug, Product updatedProduct) {
-        return productRepository.findBySlug(slug).map(product -> {
-            product.setTitle(updatedProduct.getTitle());
-            product.setDescription(updatedProduct.getDescription());
-            product.setCategory(updatedProduct.getCategory());
-            product.setDiscount(updatedProduct.getDiscount());
-            product.setPrice(updatedProduct.getPrice());
-            product.setViews(updatedProduct.getViews());
-            product.setRating(updatedProduct.getRating());
-            product.setUrl(updatedProduct.getUrl());
-
-            // Only update image if new one is provided
-            if (updatedProduct.getImageUrl() != null && !updatedProduct.getImageUrl().isEmpty()) {
-                product.setImageUrl(updatedProduct.getImageUrl());
-                product.setImagePublicId(updatedProduct.getImagePublicId());
-            }
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PRODUCT_BY_SLUG, key = "#slug"),
+            @CacheEvict(cacheNames = CacheConfig.TOP_DISCOUNT_PRODUCTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.DISCOUNT_PRODUCTS, allEntries = true) })
+    public Product updateProduct(String slug, Product updatedProduct, MultipartFile image) throws IOException {
+        StoredImage stored = store(image);
+        try {
+            return transactionTemplate.execute(status -> productRepository.findBySlug(slug).map(product -> {
+                product.setTitle(updatedProduct.getTitle());
+                product.setDescription(updatedProduct.getDescription());
+                product.setCategory(updatedProduct.getCategory());
+                product.setDiscount(updatedProduct.getDiscount());
+                product.setPrice(updatedProduct.getPrice());
+                // views is maintained by the product view counter, the admin form must not overwrite it
+                product.setRating(updatedProduct.getRating());
+                product.setUrl(updatedProduct.getUrl());
 
-            return productRepository.save(product);
-        }).orElseThrow(() -> new RuntimeException("Product not found"));
+                // Only replace the image if a new one was uploaded; the old one is deleted once this commits
+                if (stored != null) {
+                    imageDeletions.enqueue(product.getImagePublicId());
+                    product.setImageUrl(stored.url());
+                    product.setImagePublicId(stored.publicId());
+                    product.setImageSrcset(stored.srcset());
+                    product.setImageSrcsetWebp(stored.webpSrcset());
+                }
+
+                return productRepository.save(product);
+            }).orElseThrow(() -> new RuntimeException("Product not found")));
+        } catch (RuntimeException e) {
+            deleteOrphan(stored);
+            throw e;
+        }
+    }
+
+    private StoredImage store(MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        return storageProvider.store(image, UploadTarget.PRODUCT);
+    }
+
+    private void deleteOrphan(StoredImage stored) {
+        if (stored != null) {
+            imageDeletions.enqueue(stored.publicId());
+        }
     }
 
+    // Không biết slug theo id nên xóa toàn bộ cache chi tiết
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PRODUCT_BY_SLUG, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.TOP_DISCOUNT_PRODUCTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.DISCOUNT_PRODUCTS, allEntries = true) })
     public void deleteProduct(Long id) {
         productRepository.deleteById(id);
     }
 
-    public void deleteProductBySlug(String slug) {
-        productRepository.findBySlug(slug).ifPresent(product -> {
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PRODUCT_BY_SLUG, key = "#slug"),
+            @CacheEvict(cacheNames = CacheConfig.TOP_DISCOUNT_PRODUCTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.DISCOUNT_PRODUCTS, allEntries = true) })
+    @Transactional
+    public boolean deleteProductBySlug(String slug) {
+        return productRepository.findBySlug(slug).map(product -> {
+            imageDeletions.enqueue(product.getImagePublicId());
             productRepository.delete(product);
-        });
+            return true;
+        }).orElse(false);
     }
 
-    public List<Product> getTop2DiscountProducts() {
+    @Cacheable(CacheConfig.TOP_DISCOUNT_PRODUCTS)
+    public List<ProductCard> getTop2DiscountProducts() {
         return productRepository.findTop2ByOrderByDiscountDesc();
     }
 
-    public List<Product> getDiscountProducts() {
+    @Cacheable(CacheConfig.DISCOUNT_PRODUCTS)
+    public List<ProductCard> getDiscountProducts() {
         return productRepository.findAllByOrderByDiscountDesc();
     }
-}
\ No newline at end of file
+
+    /**
+     * @throws IllegalArgumentException if the slug is blank
+     * @throws RuntimeException         if no product has this slug
+     */
+    public void increaseView(String slug) {
+        if (slug == null || slug.isBlank()) {
+            throw new IllegalArgumentException("Slug is required");
+        }
+        if (!productViewCounter.increment(slug)) {
+            throw new RuntimeException("Product not found");
+        }
+    }
+
+    public List<SuggestionTrie.Suggestion> suggest(String query, int limit) {
+        return suggestionService.suggest(query, limit);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.spring_postgres_blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for the views of one kind of page (posts, products; see
+ * {@link com.example.spring_postgres_blog.config.ViewCounterConfig}).
+ * Requests only bump an in-memory counter per (slug, day); the scheduled flush pushes the aggregated
+ * deltas to the table's views column and its daily table, each as one JDBC batch in one transaction,
+ * so concurrent readers never race on the entity's views.
+ */
+public class ViewCounter {
+    private static final Logger logger = LoggerFactory.getLogger(ViewCounter.class);
+
+    private final String table;
+    private final String updateViews;
+    private final String upsertDailyViews;
+    private final String slugExists;
+    private final ConcurrentHashMap<ViewKey, LongAdder> pending = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter flushedViews;
+    private final Counter failedFlushes;
+    private final Timer flushTimer;
+
+    /**
+     * @param table      table with the slug and views columns, also the prefix of the metric names
+     * @param dailyTable per-day table with (keyColumn, date) unique and a view_count column
+     * @param keyColumn  column of dailyTable referencing table.id
+     */
+    public ViewCounter(String table, String dailyTable, String keyColumn, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.table = table;
+        this.updateViews = "UPDATE %s SET views = COALESCE(views, 0) + ? WHERE slug = ?".formatted(table);
+        this.upsertDailyViews = """
+                INSERT INTO %2$s (%3$s, date, view_count)
+                SELECT id, ?, ? FROM %1$s WHERE slug = ?
+                ON CONFLICT (%3$s, date)
+                DO UPDATE SET view_count = COALESCE(%2$s.view_count, 0) + EXCLUDED.view_count
+                """.formatted(table, dailyTable, keyColumn);
+        this.slugExists = "SELECT EXISTS (SELECT 1 FROM %s WHERE slug = ?)".formatted(table);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+
+        Gauge.builder(table + ".views.pending", this, ViewCounter::getPendingViews)
+                .description("View increments buffered in memory, not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder(table + ".views.pending.keys", pending, Map::size)
+                .description("Distinct (slug, day) counters currently buffered")
+                .register(meterRegistry);
+        this.flushedViews = Counter.builder(table + ".views.flushed").register(meterRegistry);
+        this.failedFlushes = Counter.builder(table + ".views.flush.failures").register(meterRegistry);
+        this.flushTimer = Timer.builder(table + ".views.flush").register(meterRegistry);
+    }
+
+    /**
+     * Counts one view. The slug is looked up only when its (slug, day) counter is not buffered yet,
+     * so repeated views of an active page stay in memory.
+     *
+     * @return false if no row has this slug; nothing is buffered then
+     */
+    public boolean increment(String slug) {
+        ViewKey key = new ViewKey(slug, LocalDate.now());
+        if (!pending.containsKey(key)
+                && !Boolean.TRUE.equals(jdbcTemplate.queryForObject(slugExists, Boolean.class, slug))) {
+            return false;
+        }
+        add(key, 1);
+        return true;
+    }
+
+    public long getPendingViews() {
+        long total = 0;
+        for (LongAdder adder : pending.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "${app.views.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Flushing {} buffered {} views before shutdown", getPendingViews(), table);
+        flush();
+    }
+
+    public synchronized void flush() {
+        List<Object[]> viewUpdates = new ArrayList<>();
+        List<Object[]> dailyUpserts = new ArrayList<>();
+        List<Map.Entry<ViewKey, Long>> drained = new ArrayList<>();
+
+        for (Map.Entry<ViewKey, LongAdder> entry : pending.entrySet()) {
+            ViewKey key = entry.getKey();
+            long delta = entry.getValue().sumThenReset();
+            if (delta == 0) {
+                // Idle since the previous flush: drop the key so the map only holds active pages
+                evictIfIdle(key, entry.getValue());
+                continue;
+            }
+            drained.add(Map.entry(key, delta));
+            viewUpdates.add(new Object[] { delta, key.slug() });
+            dailyUpserts.add(new Object[] { Date.valueOf(key.date()), delta, key.slug() });
+        }
+
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(updateViews, viewUpdates);
+                jdbcTemplate.batchUpdate(upsertDailyViews, dailyUpserts);
+            }));
+            flushedViews.increment(drained.stream().mapToLong(Map.Entry::getValue).sum());
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            failedFlushes.increment();
+            for (Map.Entry<ViewKey, Long> entry : drained) {
+                add(entry.getKey(), entry.getValue());
+            }
+            logger.error("Failed to flush {} {} view counters", drained.size(), table, e);
+        }
+    }
+
+    /**
+     * A caller may still hold an adder that flush() has just removed. After adding, it checks that the
+     * adder is still mapped; if not, it drains the adder into the current one. flush() drains it too
+     * after removing it. sumThenReset() hands each increment to exactly one of them, so none is lost or
+     * counted twice.
+     */
+    private void add(ViewKey key, long n) {
+        LongAdder adder = pending.computeIfAbsent(key, k -> new LongAdder());
+        adder.add(n);
+        if (pending.get(key) != adder) {
+            requeue(key, adder);
+        }
+    }
+
+    private void evictIfIdle(ViewKey key, LongAdder adder) {
+        if (pending.remove(key, adder)) {
+            requeue(key, adder);
+        }
+    }
+
+    private void requeue(ViewKey key, LongAdder removed) {
+        long late = removed.sumThenReset();
+        if (late != 0) {
+            add(key, late);
+        }
+    }
+
+    private record ViewKey(String slug, LocalDate date) {
+    }
+}
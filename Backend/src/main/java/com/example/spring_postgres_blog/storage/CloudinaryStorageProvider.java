@@ -0,0 +1,181 @@
+package com.example.spring_postgres_blog.storage;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Transformation;
+import com.cloudinary.Url;
+import com.cloudinary.utils.ObjectUtils;
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * {@link StorageProvider} on Cloudinary: images are resized on upload and delivered from its CDN.
+ * <p>
+ * Every call is timed as cloudinary.requests (tagged by operation) and counted as
+ * cloudinary.requests.in.transaction when the caller holds a database transaction: that counter should
+ * stay at zero, next to hikaricp.connections.active, since a remote call inside a transaction keeps a
+ * pooled connection busy for its whole duration.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.provider", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryStorageProvider implements StorageProvider {
+    private static final Logger logger = LoggerFactory.getLogger(CloudinaryStorageProvider.class);
+
+    private static final String ROOT_FOLDER = "runner-gear-store";
+    // Cloudinary từ chối chữ ký có timestamp cũ hơn 1 giờ
+    private static final long SIGNED_UPLOAD_LIFETIME_SECONDS = 3600;
+
+    private final Cloudinary cloudinary;
+    private final MeterRegistry meterRegistry;
+    private final Counter inTransaction;
+
+    public CloudinaryStorageProvider(Cloudinary cloudinary, MeterRegistry meterRegistry) {
+        this.cloudinary = cloudinary;
+        this.meterRegistry = meterRegistry;
+        this.inTransaction = Counter.builder("cloudinary.requests.in.transaction")
+                .description("Cloudinary calls made while holding a database transaction")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StoredImage store(MultipartFile file, UploadTarget target) throws IOException {
+        String publicId = folderOf(target) + "/" + UUID.randomUUID();
+
+        Map uploadResult = timed("upload", () -> cloudinary.uploader().upload(
+                file.getBytes(),
+                ObjectUtils.asMap(
+                        "public_id", publicId,
+                        "resource_type", "auto",
+                        "width", target.getMaxWidth(),
+                        "height", target.getMaxHeight(),
+                        "crop", "limit",
+                        "quality", target.getQuality())));
+
+        String storedId = (String) uploadResult.get("public_id");
+        return new StoredImage((String) uploadResult.get("secure_url"), storedId, variants(storedId, target));
+    }
+
+    /**
+     * One Admin API call; delete_resources accepts up to 100 ids.
+     */
+    @Override
+    public Set<String> deleteAll(Collection<String> publicIds) throws IOException {
+        Map result = timed("delete_resources", () -> {
+            try {
+                return cloudinary.api().deleteResources(new ArrayList<>(publicIds), ObjectUtils.emptyMap());
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        });
+        Set<String> gone = new HashSet<>();
+        if (result.get("deleted") instanceof Map<?, ?> deleted) {
+            deleted.forEach((publicId, status) -> {
+                if ("deleted".equals(status) || "not_found".equals(status)) {
+                    gone.add((String) publicId);
+                }
+            });
+        }
+        return gone;
+    }
+
+    /**
+     * The size limit is signed as an incoming transformation, so the browser cannot drop it. The
+     * ticket is valid for as long as Cloudinary accepts the timestamp (1 hour).
+     */
+    @Override
+    public UploadTicket signUpload(UploadTarget target) {
+        long timestamp = Instant.now().getEpochSecond();
+        String publicId = folderOf(target) + "/" + UUID.randomUUID();
+
+        Map<String, Object> params = new TreeMap<>();
+        params.put("public_id", publicId);
+        params.put("timestamp", timestamp);
+        params.put("transformation", "c_limit,w_" + target.getMaxWidth() + ",h_" + target.getMaxHeight()
+                + ",q_" + target.getQuality());
+        String signature = cloudinary.apiSignRequest(params, cloudinary.config.apiSecret);
+
+        Map<String, Object> fields = new LinkedHashMap<>(params);
+        fields.put("api_key", cloudinary.config.apiKey);
+        fields.put("signature", signature);
+        return new UploadTicket("https://api.cloudinary.com/v1_1/" + cloudinary.config.cloudName + "/image/upload",
+                fields, publicId, timestamp + SIGNED_UPLOAD_LIFETIME_SECONDS);
+    }
+
+    @Override
+    public boolean verifyUpload(UploadTarget target, String publicId, String version, String signature) {
+        if (publicId == null || version == null || signature == null
+                || !publicId.startsWith(folderOf(target) + "/")) {
+            return false;
+        }
+        return cloudinary.verifyApiResponseSignature(publicId, version, signature);
+    }
+
+    @Override
+    public String url(String publicId, String version) {
+        return cloudinary.url().secure(true).version(version).generate(publicId);
+    }
+
+    /**
+     * Derived-image URLs; Cloudinary renders each one on its first request and caches it on the CDN.
+     * The original's format is kept for browsers without WebP support.
+     */
+    @Override
+    public List<ImageVariant> variants(String publicId, UploadTarget target) {
+        List<ImageVariant> variants = new ArrayList<>();
+        for (int width : target.getVariantWidths()) {
+            variants.add(new ImageVariant(width, false, variantUrl(width).generate(publicId)));
+            variants.add(new ImageVariant(width, true, variantUrl(width).format("webp").generate(publicId)));
+        }
+        return variants;
+    }
+
+    private Url variantUrl(int width) {
+        return cloudinary.url().secure(true)
+                .transformation(new Transformation().crop("limit").width(width).quality("auto"));
+    }
+
+    private static String folderOf(UploadTarget target) {
+        return ROOT_FOLDER + "/" + target.getFolder();
+    }
+
+    private <T> T timed(String operation, RemoteCall<T> call) throws IOException {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            inTransaction.increment();
+            logger.warn("Cloudinary {} called inside a database transaction", operation);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return call.run();
+        } finally {
+            sample.stop(Timer.builder("cloudinary.requests")
+                    .tag("operation", operation)
+                    .register(meterRegistry));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RemoteCall<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.spring_postgres_blog.storage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One resized copy of a stored image, at most {@code width} pixels wide.
+ *
+ * @param webp true for a WebP copy, false for one in the original's format
+ */
+public record ImageVariant(int width, boolean webp, String url) {
+
+    /**
+     * The variants of one format as an HTML srcset value ("url 320w, url 640w"), or null if there are none.
+     */
+    public static String srcset(List<ImageVariant> variants, boolean webp) {
+        String srcset = variants.stream()
+                .filter(variant -> variant.webp() == webp)
+                .map(variant -> variant.url() + " " + variant.width() + "w")
+                .collect(Collectors.joining(", "));
+        return srcset.isEmpty() ? null : srcset;
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.spring_postgres_blog.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Resized copies of locally stored JPEG and PNG images, for {@link LocalStorageProvider}'s srcset
+ * variants. Cloudinary does this on its side; here the JDK's ImageIO does it, so there are no WebP
+ * copies (the JDK has no WebP encoder).
+ * <p>
+ * Copies are rendered on a small fixed pool with a bounded queue: uploads queue their variants and
+ * return, and a request for a copy that is not on disk yet waits for it. When the queue is full the
+ * work is dropped and the caller serves the original instead. Copies live under
+ * app.storage.local.derivatives.root and are evicted least recently used once they exceed
+ * app.storage.local.derivatives.cache-size; an evicted copy is simply rendered again when asked for.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.provider", havingValue = "local")
+public class LocalImageDerivatives {
+    private static final Logger logger = LoggerFactory.getLogger(LocalImageDerivatives.class);
+
+    // Ảnh gốc lớn hơn mức này không được giải nén (tránh ảnh "bom" vài trăm MB trong heap)
+    private static final long MAX_SOURCE_PIXELS = 40_000_000L;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final long RENDER_WAIT_SECONDS = 10;
+
+    private final Path root;
+    private final long maxBytes;
+    private final ThreadPoolExecutor executor;
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    // LRU theo thứ tự truy cập: file -> kích thước
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter generated;
+    private final Counter evicted;
+    private final Counter rejected;
+
+    public LocalImageDerivatives(@Value("${app.storage.local.derivatives.root:derivatives}") Path root,
+            @Value("${app.storage.local.derivatives.cache-size:512MB}") DataSize cacheSize,
+            @Value("${app.storage.local.derivatives.threads:2}") int threads,
+            @Value("${app.storage.local.derivatives.queue:200}") int queueSize,
+            MeterRegistry meterRegistry) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = cacheSize.toBytes();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.generated = Counter.builder("images.derivatives.generated")
+                .description("Resized image copies rendered")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("images.derivatives.evicted")
+                .description("Resized image copies evicted from the disk cache")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("images.derivatives.rejected")
+                .description("Resize jobs dropped because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("images.derivatives.cache.bytes", this, LocalImageDerivatives::cachedBytes)
+                .description("Bytes of resized image copies on disk")
+                .register(meterRegistry);
+
+        Files.createDirectories(this.root);
+        loadIndex();
+    }
+
+    /**
+     * Queues the copies of a freshly stored image. Never waits; copies that cannot be queued are
+     * rendered when first requested.
+     */
+    public void prepare(Path original, String publicId, int[] widths) {
+        for (int width : widths) {
+            Path file = pathOf(publicId, original, width);
+            if (!isCached(file)) {
+                submit(original, file, width);
+            }
+        }
+    }
+
+    /**
+     * The copy of an image at the given width, rendering it if needed.
+     *
+     * @return empty if the copy could not be rendered in time (queue full, unreadable image, slow render)
+     */
+    public Optional<Path> get(Path original, String publicId, int width) {
+        Path file = pathOf(publicId, original, width);
+        if (isCached(file)) {
+            return Optional.of(file);
+        }
+        try {
+            return Optional.of(submit(original, file, width).get(RENDER_WAIT_SECONDS, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException | TimeoutException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes every copy of an image.
+     */
+    public void delete(String publicId) throws IOException {
+        Path base = root.resolve(publicId);
+        if (!Files.isDirectory(base.getParent())) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(base.getParent(), base.getFileName() + "-w*")) {
+            stream.forEach(files::add);
+        }
+        for (Path file : files) {
+            forget(file);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    synchronized long cachedBytes() {
+        return totalBytes;
+    }
+
+    private Path pathOf(String publicId, Path original, int width) {
+        String name = original.getFileName().toString();
+        return root.resolve(publicId + "-w" + width + name.substring(name.lastIndexOf('.')));
+    }
+
+    private CompletableFuture<Path> submit(Path original, Path file, int width) {
+        CompletableFuture<Path> future = inFlight.computeIfAbsent(file, key -> {
+            CompletableFuture<Path> job = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        job.complete(render(original, file, width));
+                    } catch (Throwable e) {
+                        logger.warn("Could not resize {} to {}px: {}", original.getFileName(), width, e.getMessage());
+                        job.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(file, job);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                job.completeExceptionally(e);
+            }
+            return job;
+        });
+        if (future.isCompletedExceptionally()) {
+            inFlight.remove(file, future);
+        }
+        return future;
+    }
+
+    private Path render(Path original, Path file, int width) throws IOException {
+        String extension = file.getFileName().toString().substring(file.getFileName().toString().lastIndexOf('.') + 1);
+        BufferedImage image = scale(read(original, width), width, !"png".equals(extension));
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling("." + UUID.randomUUID() + ".tmp");
+        try {
+            write(image, extension, temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        generated.increment();
+        record(file, Files.size(file));
+        return file;
+    }
+
+    // Ảnh lớn được đọc bỏ bớt điểm ảnh ngay lúc giải mã, chỉ giữ khoảng gấp đôi độ rộng cần thiết
+    private static BufferedImage read(Path original, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                if ((long) sourceWidth * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new IOException("Image too large to resize");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, sourceWidth / (width * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ từng nửa một bằng bilinear: gần chất lượng bicubic mà nhanh hơn nhiều
+    private static BufferedImage scale(BufferedImage image, int width, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        if (image.getWidth() <= width && image.getType() == type) {
+            return image;
+        }
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        BufferedImage current = image;
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            if (currentWidth <= width) {
+                nextWidth = currentWidth;
+            }
+            int nextHeight = Math.max(1, (int) Math.round((double) currentHeight * nextWidth / currentWidth));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, opaque ? Color.WHITE : null, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    private static void write(BufferedImage image, String extension, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png".equals(extension) ? "png" : "jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!"png".equals(extension)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private synchronized boolean isCached(Path file) {
+        // get() trên LinkedHashMap truy cập theo thứ tự đẩy file lên cuối danh sách LRU
+        if (entries.get(file) == null) {
+            return false;
+        }
+        if (Files.isRegularFile(file)) {
+            return true;
+        }
+        totalBytes -= entries.remove(file);
+        return false;
+    }
+
+    private synchronized void record(Path file, long size) {
+        Long previous = entries.put(file, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        Iterator<Map.Entry<Path, Long>> oldest = entries.entrySet().iterator();
+        // Bản vừa ghi luôn được giữ lại, kể cả khi một mình nó đã vượt giới hạn
+        while (totalBytes > maxBytes && entries.size() > 1) {
+            Map.Entry<Path, Long> entry = oldest.next();
+            oldest.remove();
+            totalBytes -= entry.getValue();
+            try {
+                Files.deleteIfExists(entry.getKey());
+            } catch (IOException e) {
+                logger.warn("Could not evict {}: {}", entry.getKey(), e.getMessage());
+            }
+            evicted.increment();
+        }
+    }
+
+    private synchronized void forget(Path file) {
+        Long size = entries.remove(file);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    // Sau khi khởi động lại, thứ tự LRU được dựng lại theo thời gian sửa file
+    private void loadIndex() throws IOException {
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) walk::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                if (file.getFileName().toString().startsWith(".")) {
+                    Files.deleteIfExists(file);
+                } else {
+                    files.add(Map.entry(file, attributes));
+                }
+            }
+        }
+        files.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : files) {
+            record(entry.getKey(), entry.getValue().size());
+        }
+    }
+}
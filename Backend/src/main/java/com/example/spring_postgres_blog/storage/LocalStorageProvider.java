@@ -0,0 +1,299 @@
+package com.example.spring_postgres_blog.storage;
+
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * {@link StorageProvider} on this server's disk, for self-hosted deployments and for running without
+ * Cloudinary. Files live under app.storage.local.root as {@code <folder>/<uuid>.<ext>} and are served
+ * from {@value #MEDIA_PATH} by LocalMediaController.
+ * <p>
+ * Images are kept as uploaded: only JPEG, PNG, GIF and WebP are accepted (by content, not by name),
+ * and the target's size limit is not applied. JPEG and PNG images get resized variants, served as
+ * {@code <url>?w=<width>} from {@link LocalImageDerivatives}; GIF and WebP images have none. A name is
+ * never reused, so delivery URLs can be cached forever. Browser uploads are signed with an HMAC over app.storage.local.secret the way Cloudinary
+ * signs them, so the sign/confirm flow and the frontend work unchanged.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.provider", havingValue = "local")
+public class LocalStorageProvider implements StorageProvider {
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageProvider.class);
+
+    public static final String MEDIA_PATH = "/media/";
+    private static final long SIGNED_UPLOAD_LIFETIME_SECONDS = 3600;
+    private static final Pattern PUBLIC_ID =
+            Pattern.compile("[a-z]+/[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final List<String> EXTENSIONS = List.of("jpg", "png", "gif", "webp");
+    // ImageIO của JDK chỉ thu nhỏ được hai định dạng này
+    private static final List<String> RESIZABLE = List.of("jpg", "png");
+
+    private final Path root;
+    private final String baseUrl;
+    private final byte[] secret;
+    private final LocalImageDerivatives derivatives;
+
+    public LocalStorageProvider(@Value("${app.storage.local.root:uploads}") Path root,
+            @Value("${app.storage.local.base-url:http://localhost:8080}") String baseUrl,
+            @Value("${app.storage.local.secret:}") String secret,
+            LocalImageDerivatives derivatives) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.derivatives = derivatives;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        if (secret.isBlank()) {
+            logger.warn("app.storage.local.secret is not set, browser uploads signed before a restart will not verify");
+            this.secret = new byte[32];
+            new SecureRandom().nextBytes(this.secret);
+        } else {
+            this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public StoredImage store(MultipartFile file, UploadTarget target) throws IOException {
+        String publicId = target.getFolder() + "/" + UUID.randomUUID();
+        Path stored = write(file, publicId);
+        List<ImageVariant> variants = variantsOf(stored, target);
+        if (!variants.isEmpty()) {
+            derivatives.prepare(stored, publicId, target.getVariantWidths());
+        }
+        return new StoredImage(urlOf(stored), publicId, variants);
+    }
+
+    /**
+     * Stores a browser upload made with a ticket from {@link #signUpload}.
+     *
+     * @param fields the ticket fields posted with the file
+     * @return the upload response, shaped like Cloudinary's: public_id, version, signature, secure_url
+     * @throws IllegalArgumentException if the ticket is invalid, expired or already used, or the file is
+     *                                  not a supported image
+     */
+    public Map<String, Object> acceptSignedUpload(Map<String, String> fields, MultipartFile file) throws IOException {
+        String publicId = fields.get("public_id");
+        String timestamp = fields.get("timestamp");
+        if (publicId == null || timestamp == null || !timestamp.matches("\\d{1,12}")
+                || !PUBLIC_ID.matcher(publicId).matches()
+                || !matches(sign("public_id=" + publicId + "&timestamp=" + timestamp), fields.get("signature"))) {
+            throw new IllegalArgumentException("Invalid upload signature");
+        }
+        if (Instant.now().getEpochSecond() - Long.parseLong(timestamp) > SIGNED_UPLOAD_LIFETIME_SECONDS) {
+            throw new IllegalArgumentException("Upload signature expired");
+        }
+
+        Path stored = write(file, publicId);
+        UploadTarget.ofPath(publicId)
+                .filter(target -> !variantsOf(stored, target).isEmpty())
+                .ifPresent(target -> derivatives.prepare(stored, publicId, target.getVariantWidths()));
+        String version = String.valueOf(Instant.now().getEpochSecond());
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("public_id", publicId);
+        response.put("version", version);
+        response.put("signature", sign("public_id=" + publicId + "&version=" + version));
+        response.put("secure_url", urlOf(stored));
+        return response;
+    }
+
+    @Override
+    public Set<String> deleteAll(Collection<String> publicIds) throws IOException {
+        Set<String> gone = new HashSet<>();
+        for (String publicId : publicIds) {
+            // Id không thuộc kho này (vd. ảnh Cloudinary cũ) được coi như not_found
+            if (PUBLIC_ID.matcher(publicId).matches()) {
+                for (String extension : EXTENSIONS) {
+                    Files.deleteIfExists(root.resolve(publicId + "." + extension));
+                }
+                derivatives.delete(publicId);
+            }
+            gone.add(publicId);
+        }
+        return gone;
+    }
+
+    @Override
+    public UploadTicket signUpload(UploadTarget target) {
+        long timestamp = Instant.now().getEpochSecond();
+        String publicId = target.getFolder() + "/" + UUID.randomUUID();
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("public_id", publicId);
+        fields.put("timestamp", timestamp);
+        fields.put("signature", sign("public_id=" + publicId + "&timestamp=" + timestamp));
+        return new UploadTicket(baseUrl + MEDIA_PATH + "upload", fields, publicId,
+                timestamp + SIGNED_UPLOAD_LIFETIME_SECONDS);
+    }
+
+    @Override
+    public boolean verifyUpload(UploadTarget target, String publicId, String version, String signature) {
+        if (publicId == null || version == null || !publicId.startsWith(target.getFolder() + "/")
+                || !PUBLIC_ID.matcher(publicId).matches()) {
+            return false;
+        }
+        return matches(sign("public_id=" + publicId + "&version=" + version), signature);
+    }
+
+    /**
+     * @throws IllegalArgumentException if nothing is stored under the id
+     */
+    @Override
+    public String url(String publicId, String version) {
+        return locate(publicId).map(this::urlOf)
+                .orElseThrow(() -> new IllegalArgumentException("Uploaded file not found: " + publicId));
+    }
+
+    @Override
+    public List<ImageVariant> variants(String publicId, UploadTarget target) {
+        return locate(publicId).map(file -> variantsOf(file, target)).orElse(List.of());
+    }
+
+    /**
+     * The resized copy of a stored file, rendered if it is not cached.
+     *
+     * @param file a file returned by {@link #resolve}
+     * @return empty if the copy cannot be made right now; the original is the fallback
+     * @throws IllegalArgumentException if the image has no variant of that width
+     */
+    public Optional<Path> derivative(Path file, int width) {
+        String relativePath = root.relativize(file).toString().replace('\\', '/');
+        String name = file.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        String publicId = relativePath.substring(0, relativePath.length() - extension.length() - 1);
+        // Chỉ nhận các độ rộng có trong srcset, không để client tạo ra số bản thu nhỏ tùy ý
+        if (!PUBLIC_ID.matcher(publicId).matches() || !RESIZABLE.contains(extension)
+                || !UploadTarget.ofPath(publicId).map(target -> target.hasVariantWidth(width)).orElse(false)) {
+            throw new IllegalArgumentException("Unsupported image width: " + width);
+        }
+        return derivatives.get(file, publicId, width);
+    }
+
+    /**
+     * The stored file a path under {@value #MEDIA_PATH} points to. Never resolves outside the storage
+     * root, to directories, or to uploads still being written.
+     */
+    public Optional<Path> resolve(String relativePath) {
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root) || file.equals(root) || file.getFileName().toString().startsWith(".")
+                || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return Optional.empty();
+        }
+        return Optional.of(file);
+    }
+
+    private Optional<Path> locate(String publicId) {
+        if (!PUBLIC_ID.matcher(publicId).matches()) {
+            return Optional.empty();
+        }
+        return EXTENSIONS.stream()
+                .map(extension -> root.resolve(publicId + "." + extension))
+                .filter(Files::isRegularFile)
+                .findFirst();
+    }
+
+    private List<ImageVariant> variantsOf(Path file, UploadTarget target) {
+        String url = urlOf(file);
+        if (!RESIZABLE.contains(url.substring(url.lastIndexOf('.') + 1))) {
+            return List.of();
+        }
+        return Arrays.stream(target.getVariantWidths())
+                .mapToObj(width -> new ImageVariant(width, false, url + "?w=" + width))
+                .toList();
+    }
+
+    private Path write(MultipartFile file, String publicId) throws IOException {
+        Path base = root.resolve(publicId);
+        Files.createDirectories(base.getParent());
+        if (locate(publicId).isPresent()) {
+            throw new IllegalArgumentException("Upload ticket already used");
+        }
+        // Tên bắt đầu bằng dấu chấm: resolve() không phục vụ file đang ghi dở
+        Path temp = base.resolveSibling("." + UUID.randomUUID() + ".upload");
+        try {
+            // Multipart đã được Tomcat ghi ra đĩa thì chỉ là đổi tên file, không đọc lại vào heap
+            file.transferTo(temp.toFile());
+            Path destination = base.resolveSibling(base.getFileName() + "." + extensionOf(temp));
+            Files.move(temp, destination);
+            return destination;
+        } catch (FileAlreadyExistsException e) {
+            throw new IllegalArgumentException("Upload ticket already used");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String extensionOf(Path file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(12);
+        }
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        } else if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        } else if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return "gif";
+        } else if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        throw new IllegalArgumentException("Only JPEG, PNG, GIF and WebP images are supported");
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String urlOf(Path file) {
+        return baseUrl + MEDIA_PATH + root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                actual.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.spring_postgres_blog.storage;
+
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where uploaded images live. Select the implementation with app.storage.provider: "cloudinary"
+ * (default) or "local" for files on this server's disk.
+ * <p>
+ * Images are identified by a public id under the target's folder; entities keep that id next to the
+ * delivery URL. Upload and delete calls may be remote, so never make them while holding a database
+ * transaction.
+ */
+public interface StorageProvider {
+
+    /**
+     * Stores an image uploaded through this server, applying the target's size limit where the
+     * provider supports it. The result lists the image's {@link #variants}.
+     */
+    StoredImage store(MultipartFile file, UploadTarget target) throws IOException;
+
+    /**
+     * Deletes many images at once.
+     *
+     * @return the ids that are gone, including ids the provider did not know
+     * @throws IOException if the call fails as a whole
+     */
+    Set<String> deleteAll(Collection<String> publicIds) throws IOException;
+
+    /**
+     * Signs a browser upload that does not pass through the API: the public id is chosen here and the
+     * browser posts the returned fields plus a "file" part to the upload URL.
+     */
+    UploadTicket signUpload(UploadTarget target);
+
+    /**
+     * Checks that an upload response (public_id, version, signature) is genuine and belongs to an
+     * upload signed by {@link #signUpload} for this target. No remote call.
+     */
+    boolean verifyUpload(UploadTarget target, String publicId, String version, String signature);
+
+    /**
+     * Delivery URL of a verified upload.
+     */
+    String url(String publicId, String version);
+
+    /**
+     * The responsive variants of a stored image, one per variant width of its target and format the
+     * provider can deliver. Building the list makes no remote call.
+     */
+    List<ImageVariant> variants(String publicId, UploadTarget target);
+}
@@ -0,0 +1,18 @@
+package com.example.spring_postgres_blog.storage;
+
+import java.util.List;
+
+/**
+ * An image the {@link StorageProvider} has accepted: its delivery URL, the id to delete it by and the
+ * responsive variants of its target.
+ */
+public record StoredImage(String url, String publicId, List<ImageVariant> variants) {
+
+    public String srcset() {
+        return ImageVariant.srcset(variants, false);
+    }
+
+    public String webpSrcset() {
+        return ImageVariant.srcset(variants, true);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.spring_postgres_blog.storage;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * What an uploaded image is for: decides its storage folder and the size limit applied on upload,
+ * whether it comes through the multipart endpoints or straight from the browser, and the widths of the
+ * responsive variants made for it (the largest is the size limit itself).
+ */
+public enum UploadTarget {
+    PRODUCT("products", 800, 800, "auto:good", 320, 640, 800),
+    POST("posts", 1200, 800, "auto:best", 320, 640, 960, 1200),
+    // Banner và asset không có srcset trong DTO nên không tạo bản thu nhỏ
+    BANNER("banners", 1920, 600, "auto:best"),
+    ASSET("assets", 1200, 1200, "auto:best");
+
+    private final String folder;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final String quality;
+    private final int[] variantWidths;
+
+    UploadTarget(String folder, int maxWidth, int maxHeight, String quality, int... variantWidths) {
+        this.folder = folder;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.quality = quality;
+        this.variantWidths = variantWidths;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+
+    public int[] getVariantWidths() {
+        return variantWidths.clone();
+    }
+
+    public boolean hasVariantWidth(int width) {
+        for (int variantWidth : variantWidths) {
+            if (variantWidth == width) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The target whose folder is the first segment of a storage path such as "posts/&lt;uuid&gt;".
+     */
+    public static Optional<UploadTarget> ofPath(String path) {
+        int slash = path.indexOf('/');
+        if (slash < 0) {
+            return Optional.empty();
+        }
+        String folder = path.substring(0, slash);
+        for (UploadTarget target : values()) {
+            if (target.folder.equals(folder)) {
+                return Optional.of(target);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name is not a target (case-insensitive)
+     */
+    public static UploadTarget parse(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Upload target is required");
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown upload target: " + name);
+        }
+    }
+}
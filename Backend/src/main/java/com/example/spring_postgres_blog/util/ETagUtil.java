@@ -0,0 +1,52 @@
+package com.example.spring_postgres_blog.util;
+
+import com.example.spring_postgres_blog.dto.CollectionVersion;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Conditional GET helpers. Validators are strong ETags built from the entity id and last change
+ * time, or from a table's {@link CollectionVersion}; Last-Modified is sent alongside for clients
+ * that only understand dates. Responses are marked no-cache so clients always revalidate instead of
+ * guessing a freshness lifetime from Last-Modified.
+ * <p>
+ * Usage: {@code if (ETagUtil.checkNotModified(...)) return null;} - Spring has then already
+ * written the 304 with its headers.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    public static boolean checkNotModified(WebRequest request, String entityType, CollectionVersion version) {
+        long lastModified = toEpochMilli(version.getLastModified());
+        String etag = "\"" + entityType + "s-" + version.getCount() + "-" + Math.max(lastModified, 0) + "\"";
+        return check(request, etag, lastModified);
+    }
+
+    public static boolean checkNotModified(WebRequest request, String entityType, Long id,
+            LocalDateTime lastModified) {
+        long millis = toEpochMilli(lastModified);
+        String etag = "\"" + entityType + "-" + id + "-" + Math.max(millis, 0) + "\"";
+        return check(request, etag, millis);
+    }
+
+    private static boolean check(WebRequest request, String etag, long lastModified) {
+        if (request instanceof NativeWebRequest nativeRequest
+                && nativeRequest.getNativeResponse(HttpServletResponse.class) instanceof HttpServletResponse response) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        }
+        // lastModified < 0 bị Spring bỏ qua, khi đó chỉ so ETag
+        return request.checkNotModified(etag, lastModified);
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.spring_postgres_blog.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Accent folding shared by search indexing and search queries.
+ * Uses the same NFD decomposition as ProductService.toSlug, so "Giày chạy bộ" and "giay chay bo" match.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Lowercases, strips diacritics (đ becomes d) and collapses everything else to single spaces.
+     */
+    public static String fold(String input) {
+        if (input == null || input.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(input, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        return NON_ALNUM.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    /**
+     * Folds each value and joins them with a space, skipping nulls.
+     */
+    public static String foldAll(String... values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            String folded = fold(value);
+            if (!folded.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(folded);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package db.migration;
+
+import com.example.spring_postgres_blog.util.TextNormalizer;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Fills search_text for products written before the column existed. Java rather than SQL because
+ * the folding must match {@link TextNormalizer} exactly (Product#beforeSave uses it on every write).
+ */
+public class V3__Backfill_product_search_text extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, title, category, description FROM products WHERE search_text IS NULL AND id > ? "
+                        + "ORDER BY id LIMIT " + BATCH_SIZE);
+                PreparedStatement update = connection.prepareStatement(
+                        "UPDATE products SET search_text = ? WHERE id = ?")) {
+            long afterId = 0;
+            while (true) {
+                int rows = 0;
+                select.setLong(1, afterId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        afterId = rs.getLong("id");
+                        update.setString(1, TextNormalizer.foldAll(rs.getString("title"), rs.getString("category"),
+                                rs.getString("description")));
+                        update.setLong(2, afterId);
+                        update.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                update.executeBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+-- What the entities gained while Hibernate still managed the schema: databases baselined at V1
+-- may have none, some or all of it, hence IF NOT EXISTS everywhere. search_text is added by V2.
+
+-- updated_at: ETag / Last-Modified and the cache version of the public listings
+ALTER TABLE products ADD COLUMN IF NOT EXISTS updated_at timestamp(6);
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS updated_at timestamp(6);
+ALTER TABLE banners ADD COLUMN IF NOT EXISTS updated_at timestamp(6);
+ALTER TABLE information ADD COLUMN IF NOT EXISTS updated_at timestamp(6);
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS updated_at timestamp(6);
+
+CREATE TABLE IF NOT EXISTS product_views (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_id bigint REFERENCES products,
+    date       date,
+    view_count integer,
+    UNIQUE (product_id, date)
+);
+
+-- The view-count upsert (ON CONFLICT (post_id, date)) needs one row per post and day. Before it,
+-- concurrent requests could insert the same day twice: fold duplicates into the oldest row first.
+UPDATE post_views v SET view_count = d.total
+FROM (SELECT MIN(id) AS keep_id, SUM(COALESCE(view_count, 0)) AS total
+      FROM post_views GROUP BY post_id, date HAVING COUNT(*) > 1) d
+WHERE v.id = d.keep_id;
+DELETE FROM post_views v
+WHERE EXISTS (SELECT 1 FROM post_views d
+              WHERE d.post_id = v.post_id AND d.date = v.date AND d.id < v.id);
+
+-- Hibernate may already have added the constraint under its own name
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_index i
+        WHERE i.indrelid = 'post_views'::regclass AND i.indisunique AND i.indnatts = 2
+          AND (SELECT array_agg(a.attname::text ORDER BY a.attname)
+               FROM pg_attribute a
+               WHERE a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey)) = ARRAY['date', 'post_id']) THEN
+        ALTER TABLE post_views ADD CONSTRAINT post_views_post_id_date_key UNIQUE (post_id, date);
+    END IF;
+END
+$$;
@@ -0,0 +1,109 @@
+-- Schema as Hibernate generated it for the original entities, before any of the changes that came
+-- with the migrations. Existing databases are baselined at this version
+-- (spring.flyway.baseline-on-migrate) and skip it; V1.1 brings them up to the current entities.
+
+CREATE TABLE users (
+    id                bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username          varchar(255) NOT NULL,
+    email             varchar(255) NOT NULL UNIQUE,
+    password          varchar(255) NOT NULL,
+    role              varchar(255),
+    favorites_post    text[],
+    favorites_product text[],
+    created_at        timestamp(6)
+);
+
+CREATE TABLE categories (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title      varchar(255) NOT NULL
+);
+
+CREATE TABLE products (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    slug            varchar(255) NOT NULL UNIQUE,
+    title           varchar(255),
+    price           float(53),
+    description     varchar(255),
+    discount        float(53),
+    views           integer,
+    rating          float(53),
+    url             varchar(255),
+    category        varchar(255),
+    image_url       varchar(255),
+    image_public_id varchar(255),
+    stock           integer,
+    created_at      timestamp(6)
+);
+
+CREATE TABLE posts (
+    id               bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uid              varchar(255),
+    title            varchar(255),
+    description      varchar(255),
+    content          text,
+    category         varchar(255),
+    slug             varchar(255),
+    views            integer,
+    image_url        varchar(255),
+    image_public_id  varchar(255),
+    meta_title       varchar(255),
+    meta_description varchar(255),
+    meta_keywords    varchar(255),
+    meta_url         varchar(255),
+    created_at       timestamp(6)
+);
+
+CREATE TABLE banners (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    image_url       varchar(255),
+    image_public_id varchar(255),
+    created_at      timestamp(6)
+);
+
+CREATE TABLE information (
+    id           bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email        varchar(255) NOT NULL,
+    phone_number varchar(255) NOT NULL,
+    created_at   timestamp(6)
+);
+
+CREATE TABLE assets (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    image_url       varchar(255),
+    image_public_id varchar(255),
+    created_at      timestamp(6)
+);
+
+CREATE TABLE cart_items (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id    bigint REFERENCES users,
+    product_id bigint REFERENCES products,
+    quantity   integer NOT NULL
+);
+
+CREATE TABLE orders (
+    id               bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id          bigint REFERENCES users,
+    full_name        varchar(255),
+    email            varchar(255),
+    phone            varchar(255),
+    total_amount     float(53),
+    status           varchar(255),
+    shipping_address varchar(255),
+    created_at       timestamp(6)
+);
+
+CREATE TABLE order_items (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   bigint NOT NULL REFERENCES orders,
+    product_id bigint NOT NULL REFERENCES products,
+    quantity   integer,
+    price      float(53)
+);
+
+CREATE TABLE post_views (
+    id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    post_id    bigint REFERENCES posts,
+    date       date,
+    view_count integer
+);
@@ -0,0 +1,9 @@
+-- Full-text search on products (was created at startup by ProductSearchIndexInitializer).
+-- search_text is written by Product#beforeSave; V3 backfills rows older than the column.
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_text text;
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', COALESCE(search_text, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_products_search_vector ON products USING GIN (search_vector);
@@ -0,0 +1,60 @@
+-- Indexes and unique constraints for the lookups the repositories actually run.
+-- IF NOT EXISTS: databases that ran the app before migrations may already have some of them.
+
+-- Products: slug is already unique (V1). Category filters compare LOWER(category); the keyset
+-- listings end in (created_at, id) or (COALESCE(discount, 0), id), see ProductRepository.
+CREATE INDEX IF NOT EXISTS idx_products_created_at_id ON products (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_products_category_created_at_id ON products (LOWER(category), created_at, id);
+CREATE INDEX IF NOT EXISTS idx_products_discount_id ON products ((COALESCE(discount, 0)), id);
+CREATE INDEX IF NOT EXISTS idx_products_category_discount_id ON products (LOWER(category), (COALESCE(discount, 0)), id);
+CREATE INDEX IF NOT EXISTS idx_products_views_id ON products (views DESC NULLS LAST, id DESC);
+
+-- Posts: findBySlug expects at most one row. Duplicates could never be opened, give them a distinct slug.
+UPDATE posts p SET slug = p.slug || '-' || p.id
+WHERE EXISTS (SELECT 1 FROM posts d WHERE d.slug = p.slug AND d.id < p.id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_posts_slug ON posts (slug);
+CREATE INDEX IF NOT EXISTS idx_posts_category ON posts (category);
+CREATE INDEX IF NOT EXISTS idx_posts_created_at ON posts (created_at);
+
+-- Cart: one row per (user, product). Merge duplicates left by concurrent add-to-cart first.
+UPDATE cart_items c SET quantity = d.total
+FROM (SELECT MIN(id) AS keep_id, SUM(quantity) AS total
+      FROM cart_items GROUP BY user_id, product_id HAVING COUNT(*) > 1) d
+WHERE c.id = d.keep_id;
+DELETE FROM cart_items c
+WHERE EXISTS (SELECT 1 FROM cart_items d
+              WHERE d.user_id = c.user_id AND d.product_id = c.product_id AND d.id < c.id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_cart_items_user_product ON cart_items (user_id, product_id);
+CREATE INDEX IF NOT EXISTS idx_cart_items_product ON cart_items (product_id);
+
+-- Orders: every admin filter ends in (created_at, id) for keyset pagination (OrderRepositoryImpl).
+CREATE INDEX IF NOT EXISTS idx_orders_created_at_id ON orders (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_orders_status_created_at_id ON orders (status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_orders_user_id_created_at_id ON orders (user_id, created_at, id);
+
+-- Foreign keys are not indexed by Postgres: order graphs load items by order_id,
+-- and deleting a product checks order_items / product_views.
+CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items (order_id);
+CREATE INDEX IF NOT EXISTS idx_order_items_product ON order_items (product_id);
+
+-- post_views (post_id, date) and product_views (product_id, date) are unique since V1;
+-- their unique indexes serve the view-count upserts.
+
+-- Substring search on order email / full name (LOWER(...) LIKE '%q%').
+-- pg_trgm is a trusted extension on PG 13+, but the role may still lack CREATE on the database.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege THEN
+    RAISE WARNING 'pg_trgm is not available, order search will not be indexed';
+END
+$$;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        CREATE INDEX IF NOT EXISTS idx_orders_email_trgm ON orders USING GIN (LOWER(email) gin_trgm_ops);
+        CREATE INDEX IF NOT EXISTS idx_orders_full_name_trgm ON orders USING GIN (LOWER(full_name) gin_trgm_ops);
+    END IF;
+END
+$$;
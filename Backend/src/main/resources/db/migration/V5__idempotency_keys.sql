@@ -0,0 +1,12 @@
+-- Checkout idempotency keys (IdempotencyKeyService). The key is chosen by the client, so it is
+-- scoped per user; order_id is set in the same transaction that creates the order.
+CREATE TABLE idempotency_keys (
+    user_id         bigint       NOT NULL,
+    idempotency_key varchar(100) NOT NULL,
+    order_id        bigint REFERENCES orders ON DELETE CASCADE,
+    created_at      timestamp(6) NOT NULL,
+    expires_at      timestamp(6) NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,11 @@
+-- Orders and order items take ids from pooled sequences (allocationSize = 50 in the entities)
+-- instead of IDENTITY, so Hibernate can batch their inserts.
+-- The pooled optimizer hands out (value - 49 .. value); starting past MAX(id) + 50 keeps clear of existing rows.
+
+ALTER TABLE orders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS orders_seq INCREMENT BY 50;
+SELECT setval('orders_seq', COALESCE((SELECT MAX(id) FROM orders), 0) + 50);
+
+ALTER TABLE order_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq INCREMENT BY 50;
+SELECT setval('order_items_seq', COALESCE((SELECT MAX(id) FROM order_items), 0) + 50);
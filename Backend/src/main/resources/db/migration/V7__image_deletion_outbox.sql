@@ -0,0 +1,12 @@
+-- Outbox of Cloudinary images to delete (ImageDeletionOutbox). Rows are written in the same transaction
+-- that deletes or replaces the owning entity and drained in batches by a background worker.
+CREATE TABLE image_deletions (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    public_id       varchar(255) NOT NULL,
+    attempts        integer      NOT NULL DEFAULT 0,
+    next_attempt_at timestamp(6) NOT NULL,
+    last_error      text,
+    created_at      timestamp(6) NOT NULL
+);
+
+CREATE INDEX idx_image_deletions_next_attempt_at ON image_deletions (next_attempt_at);
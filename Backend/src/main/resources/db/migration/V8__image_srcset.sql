@@ -0,0 +1,5 @@
+-- Responsive variants of product and post images, as ready-made srcset values written on upload.
+-- image_srcset keeps the original format, image_srcset_webp is only filled where the storage provider
+-- can produce WebP. NULL means only image_url exists (older rows, or an upload without variants).
+ALTER TABLE products ADD COLUMN image_srcset text, ADD COLUMN image_srcset_webp text;
+ALTER TABLE posts ADD COLUMN image_srcset text, ADD COLUMN image_srcset_webp text;
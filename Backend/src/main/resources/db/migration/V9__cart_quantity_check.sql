@@ -0,0 +1,4 @@
+-- A cart line always holds at least one unit. Lines left at zero or below by adds with a negative
+-- quantity are dropped before the constraint goes on.
+DELETE FROM cart_items WHERE quantity < 1;
+ALTER TABLE cart_items ADD CONSTRAINT cart_items_quantity_check CHECK (quantity > 0);
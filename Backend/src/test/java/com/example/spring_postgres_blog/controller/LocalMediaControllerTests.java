@@ -0,0 +1,161 @@
+package com.example.spring_postgres_blog.controller;
+
+import com.example.spring_postgres_blog.storage.LocalImageDerivatives;
+import com.example.spring_postgres_blog.storage.LocalStorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.example.spring_postgres_blog.storage.UploadTarget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Serving files from local storage: whole files, single byte ranges, conditional requests, the
+ * long-lived cache headers and resized copies. Uses MockMvc on a temporary directory, no database or server needed; the
+ * mock request has no sendfile support, so bodies go through FileChannel.transferTo.
+ */
+class LocalMediaControllerTests {
+
+    @TempDir
+    private Path root;
+
+    private LocalImageDerivatives derivatives;
+    private LocalStorageProvider storage;
+    private MockMvc mockMvc;
+    private byte[] image;
+    private String path;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        derivatives = new LocalImageDerivatives(root.resolve("derivatives"), DataSize.ofMegabytes(1), 1, 10,
+                new SimpleMeterRegistry());
+        storage = new LocalStorageProvider(root.resolve("media"), "http://localhost:8080", "test-secret", derivatives);
+        mockMvc = MockMvcBuilders.standaloneSetup(new LocalMediaController(storage))
+                .addPlaceholderValue("app.frontend.url", "http://localhost:3000")
+                .build();
+
+        image = new byte[10_000];
+        byte[] header = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+        System.arraycopy(header, 0, image, 0, header.length);
+        for (int i = header.length; i < image.length; i++) {
+            image[i] = (byte) i;
+        }
+        StoredImage stored = storage.store(new MockMultipartFile("file", "a.jpg", "image/jpeg", image),
+                UploadTarget.PRODUCT);
+        path = "/media/" + stored.publicId() + ".jpg";
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivatives.shutdown();
+    }
+
+    @Test
+    void widthServesAResizedCopy() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1200, 800, BufferedImage.TYPE_INT_ARGB), "png", png);
+        StoredImage stored = storage.store(new MockMultipartFile("file", "cover.png", "image/png", png.toByteArray()),
+                UploadTarget.POST);
+        String cover = "/media/" + stored.publicId() + ".png";
+
+        MvcResult result = mockMvc.perform(get(cover).param("w", "640"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+                .andReturn();
+        BufferedImage resized = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(640, resized.getWidth());
+        assertEquals(427, resized.getHeight());
+
+        mockMvc.perform(get(cover).param("w", "500")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void unreadableImageFallsBackToTheOriginal() throws Exception {
+        // File setUp() tạo chỉ có header JPEG nên không giải mã được
+        mockMvc.perform(get(path).param("w", "320"))
+                .andExpect(status().isTemporaryRedirect())
+                .andExpect(header().string(HttpHeaders.LOCATION, path))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    @Test
+    void wholeFileIsServedWithCacheHeaders() throws Exception {
+        mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(content().bytes(image))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, image.length))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void singleRangeIsServedAsPartialContent() throws Exception {
+        mockMvc.perform(get(path).header(HttpHeaders.RANGE, "bytes=100-199"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-199/10000"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 100))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 100, 200)));
+
+        mockMvc.perform(get(path).header(HttpHeaders.RANGE, "bytes=-500"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 9500-9999/10000"))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 9500, 10_000)));
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        mockMvc.perform(get(path).header(HttpHeaders.RANGE, "bytes=20000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10000"));
+    }
+
+    @Test
+    void staleIfRangeGetsTheWholeFile() throws Exception {
+        mockMvc.perform(get(path).header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "\"old\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(image));
+    }
+
+    @Test
+    void matchingETagIsNotModified() throws Exception {
+        MvcResult first = mockMvc.perform(head(path))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, image.length))
+                .andReturn();
+        assertArrayEquals(new byte[0], first.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, first.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void pathsOutsideTheRootAreNotFound() throws Exception {
+        mockMvc.perform(get("/media/../secret.txt")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/media/products/missing.jpg")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.spring_postgres_blog.event;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Two application contexts, standing in for two backend nodes, share one Postgres.
+ * Only the caching and invalidation beans are loaded.
+ * Run with TEST_POSTGRES_URL (and TEST_POSTGRES_USER / TEST_POSTGRES_PASSWORD) set, e.g.
+ * docker run -e POSTGRES_PASSWORD=postgres -p 5432:5432 postgres:16
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class CacheInvalidationBusTests {
+
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = node();
+        nodeB = node();
+        await(() -> nodeA.getBean(PostgresCacheInvalidationBus.class).isListening()
+                && nodeB.getBean(PostgresCacheInvalidationBus.class).isListening());
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void changeOnOneNodeEvictsTheOtherNode() {
+        Cache bySlugOnB = nodeB.getBean(CacheManager.class).getCache(CacheConfig.PRODUCT_BY_SLUG);
+        Cache discountOnB = nodeB.getBean(CacheManager.class).getCache(CacheConfig.DISCOUNT_PRODUCTS);
+        bySlugOnB.put("giay-chay-bo", product(1L, "giay-chay-bo"));
+        bySlugOnB.put("ao-thun", product(2L, "ao-thun"));
+        discountOnB.put("list", List.of());
+
+        nodeA.publishEvent(new EntityChangeEvent(EntityChangeEvent.PRODUCT, 1L, "giay-chay-bo",
+                EntityChangeEvent.Action.UPDATED));
+
+        // Node B xử lý tin trên luồng listener, chờ tới khi cả hai cache đã bị xóa
+        await(() -> bySlugOnB.get("giay-chay-bo") == null && discountOnB.get("list") == null);
+        assertNotNull(bySlugOnB.get("ao-thun"));
+
+        List<EntityChangeEvent> remoteOnB = nodeB.getBean(RecordingListener.class).remote;
+        await(() -> !remoteOnB.isEmpty());
+        assertEquals(1, remoteOnB.size());
+        assertEquals(1L, remoteOnB.get(0).id());
+        // Node A không nhận lại tin của chính nó
+        assertTrue(nodeA.getBean(RecordingListener.class).remote.isEmpty());
+    }
+
+    @Test
+    void renamedProductIsEvictedById() {
+        Cache bySlugOnB = nodeB.getBean(CacheManager.class).getCache(CacheConfig.PRODUCT_BY_SLUG);
+        bySlugOnB.put("ten-cu", product(7L, "ten-cu"));
+
+        nodeA.publishEvent(new EntityChangeEvent(EntityChangeEvent.PRODUCT, 7L, "ten-moi",
+                EntityChangeEvent.Action.UPDATED));
+
+        await(() -> bySlugOnB.get("ten-cu") == null);
+    }
+
+    @Test
+    void burstOfChangesIsDeliveredInBatches() {
+        PostgresCacheInvalidationBus busOnA = nodeA.getBean(PostgresCacheInvalidationBus.class);
+        for (long id = 1; id <= 2000; id++) {
+            busOnA.publish(new EntityChangeEvent(EntityChangeEvent.CART, id, null, EntityChangeEvent.Action.DELETED));
+        }
+
+        // publish() chỉ xếp hàng; luồng gửi gom nhiều tin vào một câu NOTIFY
+        List<EntityChangeEvent> remoteOnB = nodeB.getBean(RecordingListener.class).remote;
+        await(() -> remoteOnB.size() == 2000);
+        await(() -> nodeA.getBean(MeterRegistry.class).get("cache.invalidation.published").counter().count() == 2000);
+        assertEquals(0.0, nodeA.getBean(MeterRegistry.class).get("cache.invalidation.dropped").counter().count());
+    }
+
+    private static AnnotationConfigApplicationContext node() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test-datasource", Map.of(
+                "spring.datasource.url", System.getenv("TEST_POSTGRES_URL"),
+                "spring.datasource.username", System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"),
+                "spring.datasource.password", System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"))));
+        context.register(NodeConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    private static Product product(Long id, String slug) {
+        Product product = new Product();
+        product.setId(id);
+        product.setSlug(slug);
+        return product;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met within 10s");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    @Configuration
+    @Import({ CacheConfig.class, PostgresCacheInvalidationBus.class, CacheInvalidationRelay.class })
+    static class NodeConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        RecordingListener recordingListener() {
+            return new RecordingListener();
+        }
+    }
+
+    static class RecordingListener {
+        final List<EntityChangeEvent> remote = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void on(EntityChangeEvent event) {
+            if (event.remote()) {
+                remote.add(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.spring_postgres_blog.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A database the original app created with Hibernate (the V1 schema, no flyway_schema_history) is
+ * baselined at 1 and migrated to the current entities, duplicate daily post views included.
+ * Runs in its own schema, dropped afterwards.
+ * <p>
+ * Needs a throwaway Postgres database: TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class BaselineMigrationTests {
+
+    private static final String SCHEMA = "baseline_migration_test";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createLegacySchema() throws Exception {
+        dataSource = new SingleConnectionDataSource(System.getenv("TEST_POSTGRES_URL"),
+                System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"),
+                System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        jdbcTemplate.execute("SET search_path TO " + SCHEMA + ", public");
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__baseline_schema.sql"));
+        }
+    }
+
+    @AfterEach
+    void dropSchema() {
+        jdbcTemplate.execute("SET search_path TO public");
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.destroy();
+    }
+
+    @Test
+    void originalSchemaIsBroughtUpToDate() {
+        jdbcTemplate.update("INSERT INTO posts (slug, title) VALUES ('bai-viet', 'Bài viết')");
+        // Trước khi có ràng buộc unique, hai request cùng lúc có thể tạo hai dòng cho cùng một ngày
+        jdbcTemplate.update("""
+                INSERT INTO post_views (post_id, date, view_count)
+                SELECT id, DATE '2026-01-01', n FROM posts, (VALUES (3), (4)) v(n)
+                """);
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        assertEquals(List.of(7), jdbcTemplate.queryForList(
+                "SELECT view_count FROM " + SCHEMA + ".post_views", Integer.class));
+        // Cùng câu upsert với ViewCounter: cần ràng buộc (post_id, date)
+        jdbcTemplate.update("""
+                INSERT INTO %s.post_views (post_id, date, view_count)
+                SELECT id, DATE '2026-01-01', 1 FROM %s.posts
+                ON CONFLICT (post_id, date) DO UPDATE SET view_count = post_views.view_count + EXCLUDED.view_count
+                """.formatted(SCHEMA, SCHEMA));
+        assertEquals(List.of(8), jdbcTemplate.queryForList(
+                "SELECT view_count FROM " + SCHEMA + ".post_views", Integer.class));
+
+        List<String> added = jdbcTemplate.queryForList("""
+                SELECT table_name || '.' || column_name FROM information_schema.columns
+                WHERE table_schema = ? AND column_name IN ('updated_at', 'search_text', 'image_srcset')
+                ORDER BY 1
+                """, String.class, SCHEMA);
+        assertEquals(List.of("banners.updated_at", "categories.updated_at", "information.updated_at",
+                "posts.image_srcset", "posts.updated_at", "products.image_srcset", "products.search_text",
+                "products.updated_at"), added);
+        assertTrue(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, SCHEMA + ".product_views"));
+    }
+}
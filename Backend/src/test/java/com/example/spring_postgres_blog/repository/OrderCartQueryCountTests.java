@@ -0,0 +1,185 @@
+package com.example.spring_postgres_blog.repository;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.model.CartItem;
+import com.example.spring_postgres_blog.model.Order;
+import com.example.spring_postgres_blog.model.OrderItem;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.model.User;
+import com.example.spring_postgres_blog.service.CartWriteBuffer;
+import com.example.spring_postgres_blog.service.IdempotencyKeyService;
+import com.example.spring_postgres_blog.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Guards the order and cart read paths against N+1 regressions: each one, including JSON
+ * serialization of the result the way the controllers return it, must run a fixed number of
+ * statements no matter how many orders, items or products there are.
+ * <p>
+ * Needs a throwaway Postgres database (migrated by Flyway, each test rolls back):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, OrderService.class, IdempotencyKeyService.class,
+        CartWriteBuffer.class, SimpleMeterRegistry.class })
+class OrderCartQueryCountTests {
+
+    private static final int ORDERS = 5;
+    private static final int ITEMS_PER_ORDER = 4;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Statistics statistics;
+    private Long userId;
+    private Long orderId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("runner@example.com");
+        user.setPassword("secret");
+        user.setUsername("runner");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < ORDERS * ITEMS_PER_ORDER; i++) {
+            Product product = new Product();
+            product.setSlug("giay-" + i);
+            product.setTitle("Giày " + i);
+            product.setPrice(100.0 + i);
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus("PENDING");
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                OrderItem item = new OrderItem();
+                item.setProduct(products.get(o * ITEMS_PER_ORDER + i));
+                item.setQuantity(1);
+                item.setPrice(100.0);
+                order.addOrderItem(item);
+            }
+            entityManager.persist(order);
+            orderId = order.getId();
+        }
+
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            CartItem cartItem = new CartItem();
+            cartItem.setUser(user);
+            cartItem.setProduct(products.get(i));
+            cartItem.setQuantity(2);
+            entityManager.persist(cartItem);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void allOrdersLoadInOneStatement() throws Exception {
+        List<Order> orders = orderRepository.findAllByOrderByCreatedAtDesc();
+        objectMapper.writeValueAsString(orders);
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void userOrdersLoadInOneStatement() throws Exception {
+        List<Order> orders = orderRepository.findByUserId(userId);
+        objectMapper.writeValueAsString(orders);
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void orderDetailLoadsInOneStatement() throws Exception {
+        Order order = orderRepository.findWithItemsById(orderId).orElseThrow();
+        objectMapper.writeValueAsString(order);
+
+        assertEquals(ITEMS_PER_ORDER, order.getOrderItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cartLoadsInOneStatement() throws Exception {
+        List<CartItem> items = cartRepository.findByUserId(userId);
+        objectMapper.writeValueAsString(items);
+
+        assertEquals(ITEMS_PER_ORDER, items.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void checkoutWritesInBatches() {
+        orderService.createOrderFromCart(userId, "Runner", "runner@example.com", "0900000000", "Ha Noi");
+
+        // Đọc giỏ, INSERT orders, một batch INSERT order_items, một DELETE giỏ, bất kể giỏ có bao nhiêu dòng.
+        // Id lấy từ pool sequence đã cấp lúc setUp; stock được trừ qua JdbcTemplate nên không tính ở đây.
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(ITEMS_PER_ORDER, statistics.getEntityInsertCount() - 1);
+        assertEquals(0, cartRepository.findByUserId(userId).size());
+    }
+
+    @Test
+    void lazyProductsWithoutGraphAreBatchFetched() throws Exception {
+        // findById không có entity graph: items và product phải được nạp theo lô, không theo từng dòng
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        objectMapper.writeValueAsString(order);
+
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+}
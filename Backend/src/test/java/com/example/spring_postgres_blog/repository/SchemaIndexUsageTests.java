@@ -0,0 +1,157 @@
+package com.example.spring_postgres_blog.repository;
+
+import com.example.spring_postgres_blog.config.JpaConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The Flyway migrations apply cleanly, Hibernate validates the entities against them, and the
+ * lookups the repositories run can be answered from the indexes they declare.
+ * <p>
+ * The seeded tables are small, so sequential scans are switched off for the transaction: the
+ * assertion is that the planner has a matching index to choose, not that it prefers it at this size.
+ * <p>
+ * Needs a throwaway Postgres database (migrated by Flyway, each test rolls back):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import(JpaConfig.class)
+class SchemaIndexUsageTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedAndAnalyze() {
+        // Dữ liệu đủ đa dạng + ANALYZE trong transaction của test, để kế hoạch không phụ thuộc thống kê còn sót
+        // lại từ các test khác (vd. mọi đơn đều PENDING thì index theo status trông vô ích)
+        jdbcTemplate.execute("""
+                INSERT INTO users (username, email, password)
+                SELECT 'seed' || i, 'seed' || i || '@example.com', 'x' FROM generate_series(1, 50) i
+                """);
+        jdbcTemplate.execute("""
+                INSERT INTO products (slug, title, category, price, discount, views, created_at)
+                SELECT 'seed-' || i, 'Seed ' || i, 'cat' || (i % 10), 100, i % 50, i, now() - i * interval '1 minute'
+                FROM generate_series(1, 2000) i
+                """);
+        jdbcTemplate.execute("""
+                INSERT INTO posts (slug, title, category, created_at)
+                SELECT 'seed-' || i, 'Seed ' || i, 'cat' || (i % 10), now() - i * interval '1 minute'
+                FROM generate_series(1, 500) i
+                """);
+        jdbcTemplate.execute("""
+                INSERT INTO orders (id, user_id, status, email, full_name, created_at)
+                SELECT nextval('orders_seq'), u.id, (ARRAY['PENDING', 'CONFIRMED', 'SHIPPING', 'DELIVERED', 'CANCELLED'])[1 + i % 5],
+                       'buyer' || i || '@example.com', 'Buyer ' || i, now() - i * interval '1 minute'
+                FROM generate_series(1, 5000) i
+                JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM users WHERE username LIKE 'seed%') u
+                  ON u.n = i % 50
+                """);
+        jdbcTemplate.execute("""
+                INSERT INTO cart_items (user_id, product_id, quantity)
+                SELECT u.id, p.id, 1
+                FROM (SELECT id FROM users WHERE username LIKE 'seed%') u
+                CROSS JOIN (SELECT id FROM products WHERE slug LIKE 'seed-%' ORDER BY id LIMIT 20) p
+                """);
+        jdbcTemplate.execute("ANALYZE users, products, posts, orders, cart_items, order_items, post_views, product_views");
+        // Cùng connection với transaction của test nên SET LOCAL có hiệu lực cho các EXPLAIN bên dưới
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    }
+
+    static Stream<Arguments> lookups() {
+        return Stream.of(
+                Arguments.of("SELECT * FROM products WHERE slug = 'giay-chay-bo'", "products_slug_key"),
+                Arguments.of("""
+                        SELECT id FROM products
+                        WHERE (created_at, id) < ('2030-01-01', 9223372036854775807)
+                        ORDER BY created_at DESC, id DESC LIMIT 21
+                        """, "idx_products_created_at_id"),
+                Arguments.of("""
+                        SELECT id FROM products
+                        WHERE LOWER(category) = LOWER('Giày') AND (created_at, id) < ('2030-01-01', 9223372036854775807)
+                        ORDER BY created_at DESC, id DESC LIMIT 21
+                        """, "idx_products_category_created_at_id"),
+                Arguments.of("""
+                        SELECT id FROM products
+                        WHERE (COALESCE(discount, 0), id) < (1e308, 9223372036854775807)
+                        ORDER BY COALESCE(discount, 0) DESC, id DESC LIMIT 21
+                        """, "idx_products_discount_id"),
+                Arguments.of("""
+                        SELECT id FROM products
+                        WHERE LOWER(category) = LOWER('Giày') AND (COALESCE(discount, 0), id) < (1e308, 9223372036854775807)
+                        ORDER BY COALESCE(discount, 0) DESC, id DESC LIMIT 21
+                        """, "idx_products_category_discount_id"),
+                Arguments.of("SELECT id FROM products ORDER BY views DESC NULLS LAST, id DESC LIMIT 5",
+                        "idx_products_views_id"),
+                Arguments.of("SELECT id FROM products WHERE search_vector @@ to_tsquery('simple', 'giay:*')",
+                        "idx_products_search_vector"),
+                Arguments.of("SELECT * FROM posts WHERE slug = 'bai-viet'", "uk_posts_slug"),
+                Arguments.of("SELECT id FROM posts WHERE category = 'Tin tức' ORDER BY id", "idx_posts_category"),
+                Arguments.of("SELECT id FROM posts ORDER BY created_at DESC LIMIT 5", "idx_posts_created_at"),
+                Arguments.of("SELECT * FROM cart_items WHERE user_id = 1", "uk_cart_items_user_product"),
+                Arguments.of("SELECT * FROM orders WHERE user_id = 1", "idx_orders_user_id_created_at_id"),
+                Arguments.of("""
+                        SELECT id FROM orders
+                        WHERE (created_at, id) < ('2030-01-01', 9223372036854775807)
+                        ORDER BY created_at DESC, id DESC LIMIT 21
+                        """, "idx_orders_created_at_id"),
+                Arguments.of("""
+                        SELECT id FROM orders WHERE status = 'PENDING'
+                        ORDER BY created_at DESC, id DESC LIMIT 21
+                        """, "idx_orders_status_created_at_id"),
+                Arguments.of("SELECT id FROM orders WHERE LOWER(email) LIKE '%alice%'", "idx_orders_email_trgm"),
+                Arguments.of("SELECT id FROM orders WHERE LOWER(full_name) LIKE '%nguyen%'",
+                        "idx_orders_full_name_trgm"),
+                Arguments.of("SELECT * FROM order_items WHERE order_id IN (1, 2, 3)", "idx_order_items_order"),
+                Arguments.of("SELECT * FROM post_views WHERE post_id = 1 AND date = '2025-01-01'",
+                        "post_views_post_id_date_key"),
+                Arguments.of("SELECT * FROM product_views WHERE product_id = 1 AND date = '2025-01-01'",
+                        "product_views_product_id_date_key"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lookups")
+    void lookupUsesIndex(String sql, String index) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in plan:\n" + plan);
+    }
+
+    @Test
+    void cartItemsAreUniquePerUserAndProduct() {
+        Integer unique = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM pg_indexes
+                WHERE tablename = 'cart_items' AND indexname = 'uk_cart_items_user_product'
+                  AND indexdef LIKE 'CREATE UNIQUE INDEX%'
+                """, Integer.class);
+
+        assertEquals(1, unique);
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.dto.CartBulkRequest;
+import com.example.spring_postgres_blog.event.CacheInvalidationRelay;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import com.example.spring_postgres_blog.event.LocalCacheInvalidationBus;
+import com.example.spring_postgres_blog.model.CartItem;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.model.User;
+import com.example.spring_postgres_blog.repository.CartRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cart writes are coalesced per user, adds are single upserts, and cart reads are cached until the next write.
+ * <p>
+ * The scheduled flush is pushed out to an hour, so every flush in these tests comes from a read or a checkout.
+ * Writes commit, so tests run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest(properties = { "app.cache.invalidation=local", "app.cart.flush-interval-ms=3600000" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, CartService.class, CartWriteBuffer.class, OrderService.class,
+        IdempotencyKeyService.class, CacheInvalidationRelay.class, LocalCacheInvalidationBus.class,
+        SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartWriteBufferTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("buyer@example.com");
+        user.setPassword("secret");
+        user.setUsername("buyer");
+        user = userRepository.save(user);
+        product = product("giay-chay-bo");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE order_items, orders, cart_items, products, users RESTART IDENTITY CASCADE");
+        // Id được đánh lại từ đầu, giỏ cache của test trước không được lọt sang test sau
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void rapidQuantityChangesBecomeOneWrite() {
+        CartItem item = cartItem(product, 1);
+        double flushedBefore = flushed();
+
+        for (int quantity = 2; quantity <= 11; quantity++) {
+            cartService.updateQuantity(item.getId(), quantity);
+        }
+        // Chưa có gì được ghi cho tới lần đọc giỏ đầu tiên
+        assertEquals(1, quantityInDatabase(item.getId()));
+
+        List<CartItem> items = cartService.getCartItemsByUserId(user.getId());
+
+        assertEquals(11, items.get(0).getQuantity());
+        assertEquals(11, quantityInDatabase(item.getId()));
+        assertEquals(1, flushed() - flushedBefore);
+    }
+
+    @Test
+    void repeatedAddsAreSummedIntoOneLine() {
+        Product other = product("ao-thun");
+        cartItem(other, 1);
+
+        cartService.addToCart(user.getId(), product.getId(), 1);
+        cartService.addToCart(user.getId(), product.getId(), 2);
+        cartService.addToCart(user.getId(), other.getId(), 4);
+
+        assertEquals(2, cartService.getTotals(user.getId()).getCount());
+        assertEquals(3 + 5, cartService.getTotals(user.getId()).getQuantity());
+        assertEquals(2, cartRepository.count());
+    }
+
+    @Test
+    void concurrentAddsOfTheSameProductShareOneLine() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    cartService.addToCart(user.getId(), product.getId(), 1);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, cartRepository.count());
+        assertEquals(100, cartService.getTotals(user.getId()).getQuantity());
+    }
+
+    @Test
+    void addingAMissingProductOrUserIsRejected() {
+        RuntimeException missingProduct = assertThrows(RuntimeException.class,
+                () -> cartService.addToCart(user.getId(), product.getId() + 1000, 1));
+        assertEquals("Product not found", missingProduct.getMessage());
+
+        RuntimeException missingUser = assertThrows(RuntimeException.class,
+                () -> cartService.addToCart(user.getId() + 1000, product.getId(), 1));
+        assertEquals("User not found", missingUser.getMessage());
+        assertEquals(0, cartRepository.count());
+    }
+
+    @Test
+    void bulkAddMergesManyLinesInOneStatement() {
+        Product other = product("ao-thun");
+        Product third = product("quan-short");
+        cartItem(other, 1);
+
+        List<CartItem> cart = cartService.addAllToCart(user.getId(), List.of(
+                new CartBulkRequest.Line(product.getId(), 2),
+                new CartBulkRequest.Line(other.getId(), 3),
+                new CartBulkRequest.Line(third.getId(), 1),
+                new CartBulkRequest.Line(product.getId(), 1)));
+
+        assertEquals(3, cart.size());
+        assertEquals(3, quantityOf(cart, product));
+        assertEquals(4, quantityOf(cart, other));
+        assertEquals(1, quantityOf(cart, third));
+    }
+
+    @Test
+    void bulkAddWithAMissingProductWritesNothing() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> cartService.addAllToCart(user.getId(),
+                List.of(new CartBulkRequest.Line(product.getId(), 1),
+                        new CartBulkRequest.Line(product.getId() + 1000, 1))));
+
+        assertEquals("Products not found: [" + (product.getId() + 1000) + "]", e.getMessage());
+        assertEquals(0, cartRepository.count());
+        assertThrows(IllegalArgumentException.class, () -> cartService.addAllToCart(user.getId(),
+                List.of(new CartBulkRequest.Line(product.getId(), 0))));
+        assertThrows(IllegalArgumentException.class, () -> cartService.addAllToCart(null,
+                List.of(new CartBulkRequest.Line(product.getId(), 1))));
+    }
+
+    @Test
+    void addingANonPositiveQuantityIsRejected() {
+        cartService.addToCart(user.getId(), product.getId(), 2);
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.addToCart(user.getId(), product.getId(), -5));
+        assertThrows(IllegalArgumentException.class, () -> cartService.addToCart(user.getId(), product.getId(), 0));
+
+        assertEquals(2, cartService.getTotals(user.getId()).getQuantity());
+        // Ràng buộc trong DB chặn cả những đường ghi không qua CartService
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "UPDATE cart_items SET quantity = 0 WHERE user_id = ?", user.getId()));
+    }
+
+    @Test
+    void invalidQuantityIsRejectedBeforeBuffering() {
+        CartItem item = cartItem(product, 1);
+        cartService.updateQuantity(item.getId(), 5);
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.updateQuantity(item.getId(), null));
+        assertThrows(IllegalArgumentException.class, () -> cartService.updateQuantity(item.getId(), 0));
+
+        // Thay đổi hợp lệ đang chờ vẫn được ghi
+        assertEquals(5, cartService.getCartItemsByUserId(user.getId()).get(0).getQuantity());
+        assertEquals(5, quantityInDatabase(item.getId()));
+    }
+
+    @Test
+    void addKeepsPendingQuantityChanges() {
+        CartItem item = cartItem(product, 1);
+        cartService.updateQuantity(item.getId(), 6);
+
+        cartService.addToCart(user.getId(), product.getId(), 2);
+
+        // Số lượng đang chờ được ghi trước, rồi mới cộng thêm
+        assertEquals(8, quantityInDatabase(item.getId()));
+    }
+
+    @Test
+    void cachedCartIsEvictedByTheNextWrite() {
+        CartItem item = cartItem(product, 1);
+        assertEquals(1, cartService.getCartItemsByUserId(user.getId()).get(0).getQuantity());
+
+        // Ghi thẳng xuống DB không đi qua service: bản cache vẫn được trả về
+        jdbcTemplate.update("UPDATE cart_items SET quantity = 7 WHERE id = ?", item.getId());
+        assertEquals(1, cartService.getCartItemsByUserId(user.getId()).get(0).getQuantity());
+
+        cartService.updateQuantity(item.getId(), 3);
+        assertEquals(3, cartService.getCartItemsByUserId(user.getId()).get(0).getQuantity());
+    }
+
+    @Test
+    void productChangeOnlyEvictsCartsHoldingIt() {
+        Product other = product("ao-thun");
+        CartItem item = cartItem(product, 1);
+        User neighbour = new User();
+        neighbour.setEmail("neighbour@example.com");
+        neighbour.setPassword("secret");
+        neighbour.setUsername("neighbour");
+        neighbour = userRepository.save(neighbour);
+        CartItem otherItem = new CartItem();
+        otherItem.setUser(neighbour);
+        otherItem.setProduct(other);
+        otherItem.setQuantity(1);
+        otherItem = cartRepository.save(otherItem);
+        cartService.getCartItemsByUserId(user.getId());
+        cartService.getCartItemsByUserId(neighbour.getId());
+        jdbcTemplate.update("UPDATE cart_items SET quantity = 7");
+
+        publisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.PRODUCT, product.getId(), product.getSlug(),
+                EntityChangeEvent.Action.UPDATED));
+
+        assertEquals(7, cartService.getCartItemsByUserId(user.getId()).get(0).getQuantity());
+        // Giỏ không chứa sản phẩm vừa đổi vẫn lấy từ cache
+        assertEquals(1, cartService.getCartItemsByUserId(neighbour.getId()).get(0).getQuantity());
+        assertEquals(7, quantityInDatabase(otherItem.getId()));
+        assertEquals(7, quantityInDatabase(item.getId()));
+    }
+
+    @Test
+    void checkoutWritesPendingChangesAndEmptiesTheCachedCart() {
+        CartItem item = cartItem(product, 1);
+        assertEquals(1, cartService.getTotals(user.getId()).getQuantity());
+        cartService.updateQuantity(item.getId(), 4);
+
+        orderService.checkout(user.getId(), null, "Nguyen Van A", "a@example.com", "0900000000", "Ha Noi");
+
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT quantity FROM order_items", Integer.class));
+        assertEquals(0, cartService.getTotals(user.getId()).getCount());
+        assertEquals(0, cartService.getCartItemsByUserId(user.getId()).size());
+    }
+
+    @Test
+    void removingALineWithAPendingChange() {
+        CartItem item = cartItem(product, 1);
+        cartService.updateQuantity(item.getId(), 5);
+
+        cartService.removeFromCart(item.getId());
+
+        assertEquals(0, cartService.getTotals(user.getId()).getCount());
+        assertEquals(0, cartRepository.count());
+    }
+
+    private double flushed() {
+        return meterRegistry.get("cart.writes.flushed").counter().count();
+    }
+
+    private static int quantityOf(List<CartItem> cart, Product product) {
+        return cart.stream()
+                .filter(item -> item.getProduct().getId().equals(product.getId()))
+                .findFirst().orElseThrow()
+                .getQuantity();
+    }
+
+    private int quantityInDatabase(Long cartItemId) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM cart_items WHERE id = ?", Integer.class, cartItemId);
+    }
+
+    private Product product(String slug) {
+        Product product = new Product();
+        product.setSlug(slug);
+        product.setTitle(slug);
+        product.setPrice(100.0);
+        return productRepository.save(product);
+    }
+
+    private CartItem cartItem(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return cartRepository.save(item);
+    }
+}
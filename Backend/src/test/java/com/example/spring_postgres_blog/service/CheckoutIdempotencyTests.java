@@ -0,0 +1,206 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.model.CartItem;
+import com.example.spring_postgres_blog.model.Order;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.model.User;
+import com.example.spring_postgres_blog.repository.CartRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Retried checkouts with the same Idempotency-Key create one order, also when the retries overlap.
+ * <p>
+ * Checkouts commit, so tests run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest(properties = "spring.datasource.hikari.maximum-pool-size=20")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, OrderService.class, IdempotencyKeyService.class,
+        CartWriteBuffer.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutIdempotencyTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setSlug("giay-chay-bo");
+        product.setTitle("Giày chạy bộ");
+        product.setPrice(100.0);
+        product.setStock(10);
+        product = productRepository.save(product);
+
+        user = new User();
+        user.setEmail("runner@example.com");
+        user.setPassword("secret");
+        user.setUsername("runner");
+        user = userRepository.save(user);
+        addToCart(2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        cacheManager.getCache(CacheConfig.IDEMPOTENCY_KEYS).clear();
+        jdbcTemplate.execute("TRUNCATE idempotency_keys, order_items, orders, cart_items, products, users "
+                + "RESTART IDENTITY CASCADE");
+    }
+
+    @Test
+    void retryReturnsTheOriginalOrder() {
+        Order first = checkout("key-1");
+        // Giỏ đã trống sau lần đầu: nếu checkout chạy lại thì sẽ lỗi "Cart is empty"
+        Order retry = checkout("key-1");
+
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(1, countOrders());
+        assertEquals(8, stock());
+    }
+
+    @Test
+    void retryIsAnsweredFromTheTableWhenNotCached() {
+        Order first = checkout("key-1");
+        cacheManager.getCache(CacheConfig.IDEMPOTENCY_KEYS).clear();
+
+        assertEquals(first.getId(), checkout("key-1").getId());
+    }
+
+    @Test
+    void overlappingRetriesCreateOneOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        Set<Long> orderIds = ConcurrentHashMap.newKeySet();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    orderIds.add(checkout("same-key").getId());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, orderIds.size());
+        assertEquals(1, countOrders());
+        assertEquals(8, stock());
+    }
+
+    @Test
+    void failedCheckoutLeavesTheKeyFree() {
+        jdbcTemplate.update("UPDATE products SET stock = 1 WHERE id = ?", product.getId());
+        assertThrows(InsufficientStockException.class, () -> checkout("key-1"));
+
+        jdbcTemplate.update("UPDATE products SET stock = 10 WHERE id = ?", product.getId());
+        Order order = checkout("key-1");
+
+        assertEquals(1, countOrders());
+        assertEquals(order.getId(), checkout("key-1").getId());
+    }
+
+    @Test
+    void expiredKeyStartsANewCheckout() {
+        Order first = checkout("key-1");
+        cacheManager.getCache(CacheConfig.IDEMPOTENCY_KEYS).clear();
+        jdbcTemplate.update("UPDATE idempotency_keys SET expires_at = created_at");
+        addToCart(1);
+
+        Order second = checkout("key-1");
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(2, countOrders());
+    }
+
+    @Test
+    void malformedKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> checkout(" "));
+        assertThrows(IllegalArgumentException.class, () -> checkout("x".repeat(101)));
+    }
+
+    private Order checkout(String key) {
+        return orderService.checkout(user.getId(), key, "Nguyen Van A", "a@example.com", "0900000000", "Ha Noi");
+    }
+
+    private void addToCart(int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        cartRepository.save(item);
+    }
+
+    private int countOrders() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders", Integer.class);
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, product.getId());
+    }
+}
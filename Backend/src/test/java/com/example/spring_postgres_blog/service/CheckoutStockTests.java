@@ -0,0 +1,292 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.event.EntityChangeEvent;
+import com.example.spring_postgres_blog.model.CartItem;
+import com.example.spring_postgres_blog.model.Order;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.model.User;
+import com.example.spring_postgres_blog.repository.CartRepository;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checkout under contention: hundreds of users race for the same few units and nobody gets
+ * stock that is not there, and carts that lock the same products in different orders do not deadlock.
+ * <p>
+ * Checkouts commit, so tests run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest(properties = "spring.datasource.hikari.maximum-pool-size=20")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, OrderService.class, IdempotencyKeyService.class,
+        CartWriteBuffer.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class CheckoutStockTests {
+
+    private static final int CHECKOUTS = 300;
+    private static final int THREADS = 32;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE order_items, orders, cart_items, products, users RESTART IDENTITY CASCADE");
+    }
+
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        Product product = product("giay-flash-sale", 50);
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            User user = user("flash" + i);
+            cart(user, product, 1);
+            userIds.add(user.getId());
+        }
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(userIds.stream().<Callable<Void>>map(userId -> () -> {
+            try {
+                checkout(userId);
+                sold.incrementAndGet();
+            } catch (InsufficientStockException e) {
+                assertEquals(0, e.getShortages().get(0).available());
+                rejected.incrementAndGet();
+            }
+            return null;
+        }).toList());
+
+        assertEquals(50, sold.get());
+        assertEquals(CHECKOUTS - 50, rejected.get());
+        assertEquals(0, stockOf(product));
+        assertEquals(50, jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?", Integer.class,
+                product.getId()));
+        // Khách bị từ chối vẫn giữ nguyên giỏ hàng
+        assertEquals(CHECKOUTS - 50, cartRepository.count());
+    }
+
+    @Test
+    void opposingCartsDoNotDeadlock() throws Exception {
+        Product a = product("giay-a", 1000);
+        Product b = product("giay-b", 1000);
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            User user = user("cart" + i);
+            // Nửa số giỏ thêm a trước, nửa còn lại thêm b trước
+            cart(user, i % 2 == 0 ? a : b, 1);
+            cart(user, i % 2 == 0 ? b : a, 2);
+            userIds.add(user.getId());
+        }
+
+        runConcurrently(userIds.stream().<Callable<Void>>map(userId -> () -> {
+            checkout(userId);
+            return null;
+        }).toList());
+
+        assertEquals(1000 - 300, stockOf(a));
+        assertEquals(1000 - 300, stockOf(b));
+    }
+
+    @Test
+    void shortLineRollsBackTheWholeCheckout() {
+        Product plenty = product("giay-con-nhieu", 10);
+        Product scarce = product("giay-sap-het", 1);
+        User user = user("buyer");
+        cart(user, plenty, 3);
+        cart(user, scarce, 2);
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> checkout(user.getId()));
+
+        assertEquals(1, e.getShortages().size());
+        assertEquals(scarce.getId(), e.getShortages().get(0).productId());
+        assertEquals(2, e.getShortages().get(0).requested());
+        assertEquals(1, e.getShortages().get(0).available());
+        assertEquals(10, stockOf(plenty));
+        assertEquals(1, stockOf(scarce));
+        assertEquals(2, cartRepository.count());
+    }
+
+    @Test
+    void untrackedStockIsNotLimited() {
+        Product untracked = product("giay-khong-dem", null);
+        User user = user("buyer");
+        cart(user, untracked, 5);
+
+        Order order = checkout(user.getId());
+
+        assertEquals(5 * 100.0, order.getTotalAmount());
+        assertEquals(null, jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class,
+                untracked.getId()));
+    }
+
+    @Test
+    void cancellingGivesTheStockBack() {
+        Product tracked = product("giay-dat-roi-huy", 10);
+        Product untracked = product("giay-khong-dem", null);
+        User user = user("buyer");
+        cart(user, tracked, 3);
+        cart(user, untracked, 2);
+        events.clear();
+        Order order = checkout(user.getId());
+        assertEquals(7, stockOf(tracked));
+        // Cache và ETag của sản phẩm phải biết stock đã đổi; sản phẩm không đếm kho thì không
+        assertEquals(List.of(tracked.getSlug()), productUpdates());
+
+        events.clear();
+        orderService.cancelOrder(order.getId());
+
+        assertEquals(10, stockOf(tracked));
+        assertEquals(List.of(tracked.getSlug()), productUpdates());
+        assertEquals(null, jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class,
+                untracked.getId()));
+        assertEquals("CANCELLED", orderService.getOrderById(order.getId()).getStatus());
+        // Hủy lần hai bị từ chối và không cộng kho thêm lần nữa
+        assertThrows(RuntimeException.class, () -> orderService.cancelOrder(order.getId()));
+        assertEquals(10, stockOf(tracked));
+
+        // Admin đổi trạng thái sang CANCELLED cũng trả kho
+        cart(user, tracked, 4);
+        Order second = checkout(user.getId());
+        assertEquals(6, stockOf(tracked));
+        orderService.updateOrderStatus(second.getId(), "CANCELLED");
+        assertEquals(10, stockOf(tracked));
+        assertThrows(RuntimeException.class, () -> orderService.updateOrderStatus(second.getId(), "PENDING"));
+        assertEquals(10, stockOf(tracked));
+    }
+
+    @Test
+    void savingAStaleProductKeepsTheReservedStock() {
+        Product product = product("giay-sua-trong-luc-ban", 10);
+        User user = user("buyer");
+        cart(user, product, 3);
+        Product editing = productRepository.findById(product.getId()).orElseThrow();
+
+        checkout(user.getId());
+        // Admin lưu form đã mở từ trước khi có đơn hàng
+        editing.setTitle("Giày mới");
+        productRepository.save(editing);
+
+        assertEquals(7, stockOf(product));
+    }
+
+    private Order checkout(Long userId) {
+        return orderService.createOrderFromCart(userId, "Nguyen Van A", "a@example.com", "0900000000", "Ha Noi");
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                // Mọi lỗi khác (deadlock, lỗi SQL) sẽ ném ra ở đây
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<String> productUpdates() {
+        return events.stream(EntityChangeEvent.class)
+                .filter(e -> EntityChangeEvent.PRODUCT.equals(e.entityType()))
+                .filter(e -> e.action() == EntityChangeEvent.Action.UPDATED)
+                .map(EntityChangeEvent::slug)
+                .toList();
+    }
+
+    private int stockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, product.getId());
+    }
+
+    private Product product(String slug, Integer stock) {
+        Product product = new Product();
+        product.setSlug(slug);
+        product.setTitle(slug);
+        product.setPrice(100.0);
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        user.setUsername(name);
+        return userRepository.save(user);
+    }
+
+    private void cart(User user, Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        cartRepository.save(item);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.spring_postgres_blog.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.dto.UploadConfirmRequest;
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import com.example.spring_postgres_blog.model.Banner;
+import com.example.spring_postgres_blog.model.Product;
+import com.example.spring_postgres_blog.repository.ProductRepository;
+import com.example.spring_postgres_blog.storage.CloudinaryStorageProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Signed browser uploads: the signature covers what the browser must not change, and only upload
+ * responses signed by Cloudinary for the right folder are attached. Signing and verification are
+ * local, so the Cloudinary client only needs fake credentials here.
+ * <p>
+ * Needs a throwaway Postgres database (migrated by Flyway, each test rolls back):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, DirectUploadService.class, CloudinaryStorageProvider.class, ImageDeletionOutbox.class,
+        SimpleMeterRegistry.class })
+class DirectUploadServiceTests {
+
+    private static final String API_SECRET = "test-secret";
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private DirectUploadService directUploadService;
+
+    @Autowired
+    private Cloudinary cloudinary;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void ticketIsSignedOverPublicIdTimestampAndSizeLimit() {
+        UploadTicket ticket = directUploadService.sign("banner");
+
+        Map<String, Object> fields = ticket.fields();
+        assertTrue(ticket.publicId().startsWith("runner-gear-store/banners/"));
+        assertEquals("c_limit,w_1920,h_600,q_auto:best", fields.get("transformation"));
+        assertEquals("test-key", fields.get("api_key"));
+        assertEquals("https://api.cloudinary.com/v1_1/test-cloud/image/upload", ticket.uploadUrl());
+
+        Map<String, Object> signed = new HashMap<>(fields);
+        signed.remove("api_key");
+        signed.remove("signature");
+        assertEquals(cloudinary.apiSignRequest(signed, API_SECRET), fields.get("signature"));
+    }
+
+    @Test
+    void confirmedBannerIsCreatedFromTheUpload() {
+        String publicId = directUploadService.sign("banner").publicId();
+
+        Banner banner = (Banner) directUploadService.confirm(
+                new UploadConfirmRequest("banner", null, publicId, "1712345678", responseSignature(publicId, "1712345678")));
+
+        assertNotNull(banner.getId());
+        assertEquals(publicId, banner.getimage_public_id());
+        assertEquals("https://res.cloudinary.com/test-cloud/image/upload/v1712345678/" + publicId,
+                banner.getimage_url());
+    }
+
+    @Test
+    void confirmedProductImageReplacesTheOldOne() {
+        Product product = new Product();
+        product.setSlug("giay-chay-bo");
+        product.setTitle("Giày chạy bộ");
+        product.setPrice(100.0);
+        product.setImagePublicId("products/old");
+        productRepository.save(product);
+        String publicId = directUploadService.sign("product").publicId();
+
+        directUploadService.confirm(new UploadConfirmRequest("product", "giay-chay-bo", publicId, "2",
+                responseSignature(publicId, "2")));
+
+        Product saved = productRepository.findBySlug("giay-chay-bo").orElseThrow();
+        assertEquals(publicId, saved.getImagePublicId());
+        String base = "https://res.cloudinary.com/test-cloud/image/upload/c_limit,q_auto,w_";
+        // Cloudinary thêm v1 cho public id có thư mục khi không có version
+        String folder = "/v1/" + publicId;
+        assertEquals(base + "320" + folder + " 320w, " + base + "640" + folder + " 640w, "
+                + base + "800" + folder + " 800w", saved.getImageSrcset());
+        assertTrue(saved.getImageSrcsetWebp().startsWith(base + "320" + folder + ".webp 320w, "));
+        assertEquals(List.of("products/old"),
+                jdbcTemplate.queryForList("SELECT public_id FROM image_deletions", String.class));
+    }
+
+    @Test
+    void replayedConfirmationIsRejected() {
+        String bannerId = directUploadService.sign("banner").publicId();
+        UploadConfirmRequest banner = new UploadConfirmRequest("banner", null, bannerId, "3",
+                responseSignature(bannerId, "3"));
+        directUploadService.confirm(banner);
+
+        assertThrows(IllegalArgumentException.class, () -> directUploadService.confirm(banner));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM banners WHERE image_public_id = ?",
+                Integer.class, bannerId));
+
+        product("giay-a");
+        product("giay-b");
+        String publicId = directUploadService.sign("product").publicId();
+        directUploadService.confirm(new UploadConfirmRequest("product", "giay-a", publicId, "4",
+                responseSignature(publicId, "4")));
+        // Gửi lại cho chính sản phẩm đó: không đổi gì, không xóa ảnh đang dùng
+        directUploadService.confirm(new UploadConfirmRequest("product", "giay-a", publicId, "4",
+                responseSignature(publicId, "4")));
+        // Gửi lại cho sản phẩm khác: bị từ chối
+        assertThrows(IllegalArgumentException.class, () -> directUploadService.confirm(
+                new UploadConfirmRequest("product", "giay-b", publicId, "4", responseSignature(publicId, "4"))));
+
+        assertEquals(null, productRepository.findBySlug("giay-b").orElseThrow().getImagePublicId());
+        assertEquals(List.of(), jdbcTemplate.queryForList("SELECT public_id FROM image_deletions", String.class));
+    }
+
+    @Test
+    void forgedOrMisplacedUploadsAreRejected() {
+        String publicId = directUploadService.sign("asset").publicId();
+
+        assertThrows(IllegalArgumentException.class, () -> directUploadService.confirm(
+                new UploadConfirmRequest("asset", null, publicId, "1", "not-the-signature")));
+        // Ảnh tải lên cho asset không được gắn làm banner
+        assertThrows(IllegalArgumentException.class, () -> directUploadService.confirm(
+                new UploadConfirmRequest("banner", null, publicId, "1", responseSignature(publicId, "1"))));
+        assertThrows(IllegalArgumentException.class, () -> directUploadService.sign("video"));
+    }
+
+    private void product(String slug) {
+        Product product = new Product();
+        product.setSlug(slug);
+        product.setTitle(slug);
+        product.setPrice(100.0);
+        productRepository.save(product);
+    }
+
+    // Chữ ký Cloudinary gửi kèm phản hồi upload
+    private String responseSignature(String publicId, String version) {
+        return cloudinary.apiSignRequest(new HashMap<>(Map.of("public_id", publicId, "version", version)), API_SECRET);
+    }
+
+    @TestConfiguration
+    static class FakeCloudinary {
+
+        @Bean
+        Cloudinary cloudinary() {
+            return new Cloudinary(ObjectUtils.asMap(
+                    "cloud_name", "test-cloud",
+                    "api_key", "test-key",
+                    "api_secret", API_SECRET,
+                    "secure", true));
+        }
+    }
+}
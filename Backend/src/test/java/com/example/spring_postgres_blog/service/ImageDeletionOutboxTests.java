@@ -0,0 +1,149 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The deletion outbox only sees images whose entity change committed, deletes them 100 per storage
+ * call, and reschedules failures with backoff. The storage provider is mocked.
+ * <p>
+ * Rows commit, so tests run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, ImageDeletionOutbox.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ImageDeletionOutboxTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @MockitoBean
+    private StorageProvider storageProvider;
+
+    @Autowired
+    private ImageDeletionOutbox outbox;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE image_deletions RESTART IDENTITY");
+    }
+
+    @Test
+    void deletesInBatchesOfOneHundred() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        when(storageProvider.deleteAll(any())).thenAnswer(invocation -> {
+            Collection<String> publicIds = invocation.getArgument(0);
+            batchSizes.add(publicIds.size());
+            return Set.copyOf(publicIds);
+        });
+        for (int i = 0; i < 250; i++) {
+            outbox.enqueue("products/" + i);
+        }
+
+        outbox.drain();
+
+        assertEquals(List.of(100, 100, 50), batchSizes);
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void rolledBackChangeQueuesNothing() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            outbox.enqueue("posts/rolled-back");
+            status.setRollbackOnly();
+        });
+
+        outbox.drain();
+
+        assertEquals(0, pending());
+        verify(storageProvider, never()).deleteAll(any());
+    }
+
+    @Test
+    void failedCallIsRetriedWithBackoff() throws Exception {
+        when(storageProvider.deleteAll(any())).thenThrow(new IOException("Rate limit exceeded"));
+        outbox.enqueue("banners/1");
+
+        outbox.drain();
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT attempts, last_error, next_attempt_at > now() + interval '20 seconds' AS later FROM image_deletions");
+        assertEquals(1, row.get("attempts"));
+        assertEquals("Rate limit exceeded", row.get("last_error"));
+        assertEquals(true, row.get("later"));
+
+        // Chưa tới hạn: lần chạy tiếp theo không gọi lại Cloudinary
+        outbox.drain();
+        verify(storageProvider).deleteAll(any());
+    }
+
+    @Test
+    void onlyImagesCloudinaryReportsGoneAreRemoved() throws Exception {
+        when(storageProvider.deleteAll(any())).thenReturn(Set.of("assets/1", "assets/missing"));
+        outbox.enqueue("assets/1");
+        outbox.enqueue("assets/missing");
+        outbox.enqueue("assets/2");
+
+        outbox.drain();
+
+        assertEquals(List.of("assets/2"),
+                jdbcTemplate.queryForList("SELECT public_id FROM image_deletions", String.class));
+    }
+
+    @Test
+    void backoffDoublesUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(30), outbox.backoff(1));
+        assertEquals(Duration.ofMinutes(1), outbox.backoff(2));
+        assertEquals(Duration.ofMinutes(4), outbox.backoff(4));
+        assertEquals(Duration.ofHours(6), outbox.backoff(40));
+    }
+
+    private int pending() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM image_deletions", Integer.class);
+    }
+}
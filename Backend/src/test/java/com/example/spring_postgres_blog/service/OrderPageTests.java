@@ -0,0 +1,154 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.dto.CursorPage;
+import com.example.spring_postgres_blog.model.Order;
+import com.example.spring_postgres_blog.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admin order listing: filters combine, and walking the cursors visits every matching order
+ * exactly once in (createdAt, id) descending order, including orders that share a createdAt.
+ * <p>
+ * Needs a throwaway Postgres database (migrated by Flyway, each test rolls back):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, OrderService.class, IdempotencyKeyService.class,
+        CartWriteBuffer.class, SimpleMeterRegistry.class })
+class OrderPageTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderService orderService;
+
+    private Long aliceId;
+
+    @BeforeEach
+    void setUp() {
+        User alice = user("alice");
+        User bob = user("bob");
+        aliceId = alice.getId();
+
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 9, 0);
+        for (int i = 0; i < 12; i++) {
+            // Hai đơn liền nhau có cùng createdAt để kiểm tra id làm khóa phụ
+            LocalDateTime createdAt = base.plusDays(i / 2);
+            order(i % 3 == 0 ? bob : alice, i % 2 == 0 ? "PENDING" : "DELIVERED", createdAt,
+                    i % 3 == 0 ? "Bob Tran" : "Alice Nguyen");
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void cursorsWalkEveryOrderOnce() {
+        List<Order> all = walk(null, null, null, null, null, 5);
+
+        assertEquals(12, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            Order previous = all.get(i - 1);
+            Order current = all.get(i);
+            int byDate = previous.getCreatedAt().compareTo(current.getCreatedAt());
+            assertTrue(byDate > 0 || (byDate == 0 && previous.getId() > current.getId()));
+        }
+    }
+
+    @Test
+    void filtersCombine() {
+        List<Order> orders = walk("pending", aliceId, "2025-03-02", "2025-03-05", "ALICE", 2);
+
+        // i = 2, 4, 8 (i = 6 là của bob)
+        assertEquals(3, orders.size());
+        for (Order order : orders) {
+            assertEquals("PENDING", order.getStatus());
+            assertEquals(aliceId, order.getUser().getId());
+        }
+    }
+
+    @Test
+    void likeWildcardsInQueryAreLiteral() {
+        assertTrue(walk(null, null, null, null, "%", 20).isEmpty());
+        assertEquals(4, walk(null, null, null, null, "bob@", 20).size());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        CursorPage<Order> page = orderService.getOrdersPage(null, null, null, null, null, null, 20);
+
+        assertEquals(12, page.getItems().size());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrdersPage(null, null, null, null, null, "not-a-cursor", 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrdersPage(null, null, "yesterday", null, null, null, 20));
+    }
+
+    private List<Order> walk(String status, Long userId, String from, String to, String query, int size) {
+        List<Order> result = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Order> page = orderService.getOrdersPage(status, userId, from, to, query, cursor, size);
+            result.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return result;
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        user.setUsername(name);
+        return entityManager.persist(user);
+    }
+
+    private void order(User user, String status, LocalDateTime createdAt, String fullName) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(status);
+        order.setEmail(user.getEmail());
+        order.setFullName(fullName);
+        order.setCreatedAt(createdAt);
+        entityManager.persist(order);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.CacheConfig;
+import com.example.spring_postgres_blog.config.JpaConfig;
+import com.example.spring_postgres_blog.config.ViewCounterConfig;
+import com.example.spring_postgres_blog.model.Post;
+import com.example.spring_postgres_blog.repository.PostRepository;
+import com.example.spring_postgres_blog.storage.StorageProvider;
+import com.example.spring_postgres_blog.storage.StoredImage;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Post writes call the storage provider without holding a pooled connection, and images that lose their
+ * post (or were uploaded for a post that was not saved) end up in the deletion outbox. Storage is mocked;
+ * each call records the pool state at that moment.
+ * <p>
+ * Writes commit, so tests run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ JpaConfig.class, CacheConfig.class, PostService.class, ViewCounterConfig.class, ImageDeletionOutbox.class,
+        SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PostImageTransactionTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @MockitoBean
+    private StorageProvider storageProvider;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ImageDeletionOutbox imageDeletions;
+
+    @Autowired
+    @Qualifier(ViewCounterConfig.POST_VIEWS)
+    private ViewCounter postViewCounter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicInteger uploads = new AtomicInteger();
+    // Số connection đang mượn và có transaction hay không, ghi lại ở mỗi lần gọi kho ảnh
+    private final List<String> remoteCalls = new ArrayList<>();
+
+    @BeforeEach
+    void stubCloudinary() throws Exception {
+        when(storageProvider.store(any(), any())).thenAnswer(invocation -> {
+            record("upload");
+            String publicId = "posts/" + uploads.incrementAndGet();
+            return new StoredImage("https://cdn.example.com/" + publicId, publicId, List.of());
+        });
+        when(storageProvider.deleteAll(any())).thenAnswer(invocation -> {
+            Collection<String> publicIds = invocation.getArgument(0);
+            record("delete_resources " + publicIds);
+            return Set.copyOf(publicIds);
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE post_views, posts, image_deletions RESTART IDENTITY CASCADE");
+    }
+
+    @Test
+    void createUploadsBeforeTheTransaction() throws Exception {
+        Post created = postService.createPost(post("chay-bo-buoi-sang"), image());
+
+        assertEquals("posts/1", created.getImagePublicId());
+        assertEquals(List.of("upload 0 false"), remoteCalls);
+        assertTrue(postRepository.findBySlug("chay-bo-buoi-sang").isPresent());
+    }
+
+    @Test
+    void failedSaveDeletesTheUpload() throws Exception {
+        postService.createPost(post("trung-slug"), null);
+
+        assertThrows(RuntimeException.class, () -> postService.createPost(post("trung-slug"), image()));
+
+        assertEquals(List.of("posts/1"), queuedDeletions());
+        imageDeletions.drain();
+        assertEquals(List.of("upload 0 false", "delete_resources [posts/1] 0 false"), remoteCalls);
+        assertEquals(List.of(), queuedDeletions());
+    }
+
+    @Test
+    void updateQueuesTheReplacedImage() throws Exception {
+        postService.createPost(post("giay-moi"), image());
+        remoteCalls.clear();
+
+        Post updated = postService.updatePost("giay-moi", post("giay-moi"), image());
+
+        assertEquals("posts/2", updated.getImagePublicId());
+        assertEquals(List.of("upload 0 false"), remoteCalls);
+        assertEquals(List.of("posts/1"), queuedDeletions());
+        assertEquals("posts/2", postRepository.findBySlug("giay-moi").orElseThrow().getImagePublicId());
+    }
+
+    @Test
+    void updateOfAMissingPostDeletesTheUpload() throws Exception {
+        assertThrows(RuntimeException.class, () -> postService.updatePost("khong-co", post("khong-co"), image()));
+
+        assertEquals(List.of("upload 0 false"), remoteCalls);
+        assertEquals(List.of("posts/1"), queuedDeletions());
+    }
+
+    @Test
+    void deleteQueuesTheImageWithoutCallingCloudinary() throws Exception {
+        postService.createPost(post("bai-cu"), image());
+        remoteCalls.clear();
+
+        postService.deletePost("bai-cu");
+
+        assertTrue(remoteCalls.isEmpty());
+        assertEquals(List.of("posts/1"), queuedDeletions());
+        assertFalse(postRepository.findBySlug("bai-cu").isPresent());
+    }
+
+    @Test
+    void postWithoutImageNeverCallsCloudinary() throws Exception {
+        postService.createPost(post("khong-anh"), null);
+        postService.deletePost("khong-anh");
+
+        imageDeletions.drain();
+
+        verify(storageProvider, never()).deleteAll(any());
+        assertTrue(remoteCalls.isEmpty());
+        assertEquals(List.of(), queuedDeletions());
+    }
+
+    @Test
+    void viewsAreOnlyWrittenByTheCounter() throws Exception {
+        postService.createPost(post("duoc-xem"), null);
+        Post editing = postRepository.findBySlug("duoc-xem").orElseThrow();
+
+        postService.increaseView("duoc-xem");
+        postService.increaseView("duoc-xem");
+        postViewCounter.flush();
+        // Lưu bản đã đọc trước khi lượt xem được ghi: không được ghi đè số lượt xem
+        editing.setTitle("Đã sửa");
+        postRepository.save(editing);
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT views FROM posts WHERE slug = 'duoc-xem'", Integer.class));
+        assertThrows(IllegalArgumentException.class, () -> postService.increaseView(" "));
+        assertThrows(RuntimeException.class, () -> postService.increaseView("khong-co"));
+        assertEquals(0, postViewCounter.getPendingViews());
+    }
+
+    private List<String> queuedDeletions() {
+        return jdbcTemplate.queryForList("SELECT public_id FROM image_deletions ORDER BY id", String.class);
+    }
+
+    private void record(String call) throws SQLException {
+        int active = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections();
+        remoteCalls.add(call + " " + active + " " + TransactionSynchronizationManager.isActualTransactionActive());
+    }
+
+    private static Post post(String slug) {
+        Post post = new Post();
+        post.setTitle(slug);
+        post.setSlug(slug);
+        return post;
+    }
+
+    private static MockMultipartFile image() {
+        return new MockMultipartFile("image", "cover.jpg", "image/jpeg", new byte[] { 1, 2, 3 });
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.spring_postgres_blog.service;
+
+import com.example.spring_postgres_blog.config.ViewCounterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The post and product view counters are the same component on different tables: each flushes its own
+ * views column and daily table, and neither buffers views of a slug that does not exist.
+ * <p>
+ * The scheduled flush is pushed out to an hour so every flush here is explicit. Flushes commit, so tests
+ * run outside the usual test transaction and truncate afterwards.
+ * Needs a throwaway Postgres database (migrated by Flyway):
+ * TEST_POSTGRES_URL, TEST_POSTGRES_USER, TEST_POSTGRES_PASSWORD.
+ */
+@DataJpaTest(properties = "app.views.flush-interval-ms=3600000")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@Import({ ViewCounterConfig.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ViewCounterTests {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "postgres"));
+    }
+
+    @Autowired
+    @Qualifier(ViewCounterConfig.POST_VIEWS)
+    private ViewCounter postViews;
+
+    @Autowired
+    @Qualifier(ViewCounterConfig.PRODUCT_VIEWS)
+    private ViewCounter productViews;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE post_views, posts, product_views, products RESTART IDENTITY CASCADE");
+    }
+
+    @Test
+    void eachCounterFlushesItsOwnTables() {
+        jdbcTemplate.update("INSERT INTO posts (slug, title, views) VALUES ('bai-viet', 'Bài viết', 10)");
+        jdbcTemplate.update("INSERT INTO products (slug, title, price) VALUES ('giay', 'Giày', 100)");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(postViews.increment("bai-viet"));
+        }
+        assertTrue(productViews.increment("giay"));
+        assertTrue(productViews.increment("giay"));
+        postViews.flush();
+        productViews.flush();
+
+        assertEquals(13, jdbcTemplate.queryForObject("SELECT views FROM posts", Integer.class));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT view_count FROM post_views", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT views FROM products", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT view_count FROM product_views", Integer.class));
+        assertEquals(3.0, meterRegistry.get("posts.views.flushed").counter().count());
+        assertEquals(2.0, meterRegistry.get("products.views.flushed").counter().count());
+    }
+
+    @Test
+    void unknownSlugIsNotBuffered() {
+        jdbcTemplate.update("INSERT INTO posts (slug, title) VALUES ('bai-viet', 'Bài viết')");
+
+        // Slug của bài viết không phải slug sản phẩm
+        assertFalse(productViews.increment("bai-viet"));
+        assertFalse(postViews.increment("khong-co"));
+
+        assertEquals(0, postViews.getPendingViews());
+        assertEquals(0, productViews.getPendingViews());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.spring_postgres_blog.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resized copies: rendered at the asked width in the original's format, kept on disk within the cache
+ * size by evicting the least recently used copy, and rendered again after eviction. Runs on a
+ * temporary directory with real images drawn in memory.
+ */
+class LocalImageDerivativesTests {
+
+    @TempDir
+    private Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LocalImageDerivatives derivatives;
+
+    @AfterEach
+    void tearDown() {
+        derivatives.shutdown();
+    }
+
+    @Test
+    void copiesAreResizedInTheOriginalFormat() throws Exception {
+        derivatives = new LocalImageDerivatives(dir.resolve("cache"), DataSize.ofMegabytes(10), 2, 10, meterRegistry);
+        Path jpeg = image("products/a.jpg", 1600, 1200, "jpeg");
+
+        Path copy = derivatives.get(jpeg, "products/a", 320).orElseThrow();
+
+        BufferedImage resized = ImageIO.read(copy.toFile());
+        assertEquals(320, resized.getWidth());
+        assertEquals(240, resized.getHeight());
+        assertTrue(copy.getFileName().toString().endsWith(".jpg"));
+        // Lần sau lấy từ cache, không vẽ lại
+        assertEquals(copy, derivatives.get(jpeg, "products/a", 320).orElseThrow());
+        assertEquals(1.0, meterRegistry.get("images.derivatives.generated").counter().count());
+
+        derivatives.delete("products/a");
+        assertFalse(Files.exists(copy));
+        assertEquals(0, derivatives.cachedBytes());
+    }
+
+    @Test
+    void leastRecentlyUsedCopyIsEvicted() throws Exception {
+        Path first = image("posts/first.png", 1200, 800, "png");
+        Path second = image("posts/second.png", 1200, 800, "png");
+        Path third = image("posts/third.png", 1200, 800, "png");
+        // Đo kích thước một bản để cache vừa đúng hai bản
+        LocalImageDerivatives probe = new LocalImageDerivatives(dir.resolve("probe"), DataSize.ofMegabytes(10), 1, 10,
+                new SimpleMeterRegistry());
+        long size;
+        try {
+            size = Files.size(probe.get(first, "posts/first", 640).orElseThrow());
+        } finally {
+            probe.shutdown();
+        }
+        derivatives = new LocalImageDerivatives(dir.resolve("cache"), DataSize.ofBytes(size * 5 / 2), 1, 10,
+                meterRegistry);
+
+        Path firstCopy = derivatives.get(first, "posts/first", 640).orElseThrow();
+        Path secondCopy = derivatives.get(second, "posts/second", 640).orElseThrow();
+        derivatives.get(first, "posts/first", 640);
+        Path thirdCopy = derivatives.get(third, "posts/third", 640).orElseThrow();
+
+        assertTrue(Files.exists(firstCopy));
+        assertFalse(Files.exists(secondCopy));
+        assertTrue(Files.exists(thirdCopy));
+        assertEquals(1.0, meterRegistry.get("images.derivatives.evicted").counter().count());
+
+        // Bản bị loại được vẽ lại khi có người hỏi tới
+        assertEquals(secondCopy, derivatives.get(second, "posts/second", 640).orElseThrow());
+        assertTrue(Files.exists(secondCopy));
+        assertEquals(4.0, meterRegistry.get("images.derivatives.generated").counter().count());
+    }
+
+    @Test
+    void cacheIsRebuiltFromDiskInModificationOrder() throws Exception {
+        derivatives = new LocalImageDerivatives(dir.resolve("cache"), DataSize.ofMegabytes(10), 1, 10, meterRegistry);
+        Path original = image("products/b.png", 900, 900, "png");
+        Path copy = derivatives.get(original, "products/b", 320).orElseThrow();
+        long bytes = derivatives.cachedBytes();
+        derivatives.shutdown();
+        Files.writeString(copy.resolveSibling(".half-written.tmp"), "partial");
+
+        derivatives = new LocalImageDerivatives(dir.resolve("cache"), DataSize.ofMegabytes(10), 1, 10, meterRegistry);
+
+        assertEquals(bytes, derivatives.cachedBytes());
+        assertNotEquals(0, bytes);
+        assertFalse(Files.exists(copy.resolveSibling(".half-written.tmp")));
+        assertEquals(copy, derivatives.get(original, "products/b", 320).orElseThrow());
+        assertEquals(1.0, meterRegistry.get("images.derivatives.generated").counter().count());
+    }
+
+    // Nhiễu ngẫu nhiên để các bản thu nhỏ có kích thước file đáng kể
+    private Path image(String name, int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(name.hashCode());
+        for (int y = 0; y < height; y += 8) {
+            for (int x = 0; x < width; x += 8) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width / 4, height / 4);
+        graphics.dispose();
+        Path file = dir.resolve("media").resolve(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.spring_postgres_blog.storage;
+
+import com.example.spring_postgres_blog.dto.UploadTicket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Local disk storage: files land under the root with an extension taken from their content, signed
+ * browser uploads are accepted once and verify like Cloudinary responses, and nothing outside the
+ * root can be read or deleted. Runs on a temporary directory, no database needed.
+ */
+class LocalStorageProviderTests {
+
+    // Đủ để nhận dạng PNG theo nội dung
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D };
+
+    @TempDir
+    private Path dir;
+
+    private Path root;
+    private LocalImageDerivatives derivatives;
+    private LocalStorageProvider storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = dir.resolve("media");
+        derivatives = new LocalImageDerivatives(dir.resolve("derivatives"), DataSize.ofMegabytes(1), 1, 10,
+                new SimpleMeterRegistry());
+        storage = new LocalStorageProvider(root, "http://media.example.com/", "test-secret", derivatives);
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivatives.shutdown();
+    }
+
+    @Test
+    void storedImageIsServedFromItsFolder() throws Exception {
+        StoredImage stored = storage.store(image("banner.jpeg", PNG), UploadTarget.BANNER);
+
+        assertTrue(stored.publicId().startsWith("banners/"));
+        assertEquals("http://media.example.com/media/" + stored.publicId() + ".png", stored.url());
+        Path file = root.resolve(stored.publicId() + ".png");
+        assertTrue(Files.isRegularFile(file));
+        assertEquals(file, storage.resolve(stored.publicId() + ".png").orElseThrow());
+        assertEquals(List.of(), stored.variants());
+    }
+
+    @Test
+    void variantsFollowTheTargetWidths() throws Exception {
+        StoredImage stored = storage.store(image("shoe.png", PNG), UploadTarget.PRODUCT);
+
+        assertEquals(stored.url() + "?w=320 320w, " + stored.url() + "?w=640 640w, " + stored.url() + "?w=800 800w",
+                stored.srcset());
+        assertNull(stored.webpSrcset());
+        assertEquals(stored.variants(), storage.variants(stored.publicId(), UploadTarget.PRODUCT));
+
+        // GIF không thu nhỏ được bằng ImageIO nên không có srcset
+        StoredImage gif = storage.store(image("a.gif", "GIF89a".getBytes()), UploadTarget.PRODUCT);
+        assertEquals(List.of(), gif.variants());
+        Path file = root.resolve(stored.publicId() + ".png");
+        assertThrows(IllegalArgumentException.class, () -> storage.derivative(file, 500));
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.derivative(root.resolve(gif.publicId() + ".gif"), 320));
+    }
+
+    @Test
+    void nonImagesAreRejectedAndLeaveNothingBehind() throws Exception {
+        MockMultipartFile script = image("avatar.png", "<svg onload=alert(1)>".getBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> storage.store(script, UploadTarget.ASSET));
+        try (var files = Files.walk(root)) {
+            assertEquals(List.of(), files.filter(Files::isRegularFile).toList());
+        }
+    }
+
+    @Test
+    void signedUploadIsAcceptedOnceAndVerifies() throws Exception {
+        UploadTicket ticket = storage.signUpload(UploadTarget.POST);
+        assertEquals("http://media.example.com/media/upload", ticket.uploadUrl());
+
+        Map<String, Object> response = storage.acceptSignedUpload(fields(ticket), image("cover.png", PNG));
+        String publicId = (String) response.get("public_id");
+        String version = (String) response.get("version");
+        String signature = (String) response.get("signature");
+
+        assertEquals(ticket.publicId(), publicId);
+        assertTrue(storage.verifyUpload(UploadTarget.POST, publicId, version, signature));
+        assertEquals(response.get("secure_url"), storage.url(publicId, version));
+        // Sai thư mục, sửa version hoặc chữ ký đều không được chấp nhận
+        assertFalse(storage.verifyUpload(UploadTarget.PRODUCT, publicId, version, signature));
+        assertFalse(storage.verifyUpload(UploadTarget.POST, publicId, version + "1", signature));
+        assertFalse(storage.verifyUpload(UploadTarget.POST, publicId, version, signature.replace('a', 'b') + "0"));
+
+        IllegalArgumentException reused = assertThrows(IllegalArgumentException.class,
+                () -> storage.acceptSignedUpload(fields(ticket), image("cover.png", PNG)));
+        assertEquals("Upload ticket already used", reused.getMessage());
+    }
+
+    @Test
+    void tamperedTicketsAreRejected() throws Exception {
+        UploadTicket ticket = storage.signUpload(UploadTarget.BANNER);
+
+        Map<String, String> otherId = fields(ticket);
+        otherId.put("public_id", "banners/00000000-0000-0000-0000-000000000000");
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.acceptSignedUpload(otherId, image("a.png", PNG)));
+
+        Map<String, String> traversal = fields(ticket);
+        traversal.put("public_id", "../../etc/passwd");
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.acceptSignedUpload(traversal, image("a.png", PNG)));
+
+        // Cùng vé nhưng ký bằng secret của kho khác
+        LocalStorageProvider other = new LocalStorageProvider(dir.resolve("other"), "http://other", "other-secret",
+                derivatives);
+        Map<String, String> foreign = fields(other.signUpload(UploadTarget.BANNER));
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.acceptSignedUpload(foreign, image("a.png", PNG)));
+    }
+
+    @Test
+    void deleteRemovesOnlyStoredImages() throws Exception {
+        StoredImage stored = storage.store(image("a.png", PNG), UploadTarget.PRODUCT);
+        Files.writeString(root.resolveSibling("outside.txt"), "keep");
+
+        Set<String> gone = storage.deleteAll(List.of(stored.publicId(), "../outside.txt",
+                "runner-gear-store/products/legacy"));
+
+        assertEquals(Set.of(stored.publicId(), "../outside.txt", "runner-gear-store/products/legacy"), gone);
+        assertFalse(Files.exists(root.resolve(stored.publicId() + ".png")));
+        assertTrue(Files.exists(root.resolveSibling("outside.txt")));
+    }
+
+    @Test
+    void resolveStaysInsideTheRoot() throws Exception {
+        Files.writeString(root.resolveSibling("secret.txt"), "secret");
+        Files.writeString(root.resolve(".partial.upload"), "partial");
+
+        assertTrue(storage.resolve("../secret.txt").isEmpty());
+        assertTrue(storage.resolve(root.resolveSibling("secret.txt").toString()).isEmpty());
+        assertTrue(storage.resolve(".partial.upload").isEmpty());
+        assertTrue(storage.resolve("").isEmpty());
+    }
+
+    private static MockMultipartFile image(String name, byte[] content) {
+        return new MockMultipartFile("file", name, "image/png", content);
+    }
+
+    private static Map<String, String> fields(UploadTicket ticket) {
+        Map<String, String> fields = new HashMap<>();
+        ticket.fields().forEach((key, value) -> fields.put(key, String.valueOf(value)));
+        return fields;
+    }
+}
@@ -0,0 +1,33 @@
+import React from 'react';
+
+interface ResponsiveImageProps {
+    src: string;
+    // srcset do backend tạo lúc upload; ảnh cũ chưa có thì chỉ dùng src
+    srcSet?: string | null;
+    webpSrcSet?: string | null;
+    sizes: string;
+    alt: string;
+    className?: string;
+    onClick?: () => void;
+}
+
+// Thay cho <Image fill>: trình duyệt tự chọn bản vừa khung hình, ưu tiên WebP nếu có
+export default function ResponsiveImage({ src, srcSet, webpSrcSet, sizes, alt, className, onClick }: ResponsiveImageProps) {
+    return (
+        <picture>
+            {webpSrcSet && <source type="image/webp" srcSet={webpSrcSet} sizes={sizes} />}
+            {/* next/image không nhận srcset tự tạo, và ảnh đã được backend thu nhỏ sẵn */}
+            {/* eslint-disable-next-line @next/next/no-img-element */}
+            <img
+                src={src}
+                srcSet={srcSet ?? undefined}
+                sizes={srcSet ? sizes : undefined}
+                alt={alt}
+                loading="lazy"
+                decoding="async"
+                className={`absolute inset-0 w-full h-full ${className ?? ''}`}
+                onClick={onClick}
+            />
+        </picture>
+    );
+}
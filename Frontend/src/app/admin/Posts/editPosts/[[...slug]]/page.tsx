@@ -214,40 +214,6 @@ export default function PostForm() {
         fetchCategories();
     }, []);
 
-    // Update form data when selecting a post in Edit or SEO mode
-    useEffect(() => {
-        if ((formTab === 'Edit' || formTab === 'SEO') && selectedPostSlug) {
-            const selectedPost = postsState.find((p) => p.slug === selectedPostSlug);
-            if (selectedPost) {
-                const sanitizedContent = sanitizeHtml(selectedPost.content, {
-                    allowedTags: sanitizeHtml.defaults.allowedTags.concat(['img', 'iframe']),
-                    allowedAttributes: {
-                        img: ['src', 'alt'],
-                        a: ['href', 'target'],
-                        '*': ['style', 'class'],
-                    },
-                });
-                const sanitizedDescription = sanitizeHtml(selectedPost.description, {
-                    allowedTags: sanitizeHtml.defaults.allowedTags.concat(['p', 'br']),
-                    allowedAttributes: {
-                        a: ['href', 'target'],
-                        '*': ['style', 'class'],
-                    },
-                });
-                setFormData({
-                    title: selectedPost.title || '',
-                    description: sanitizedDescription,
-                    views: selectedPost.views ?? 0,
-                    category: selectedPost.category || '',
-                    content: sanitizedContent,
-                    image_url: selectedPost.image_url || '',
-                    slug: selectedPost.slug,
-                });
-                setPreview(selectedPost.image_url || DEFAULT_IMAGE);
-            }
-        }
-    }, [formTab, selectedPostSlug, postsState]);
-
     // Handle image preview
     useEffect(() => {
         if (imageFile) {
@@ -72,16 +72,23 @@ export default function Admin_EditBanner() {
             return;
         }
 
-        const data = new FormData();
-        data.append("file", imageFile);
+        const authHeaders = { headers: { Authorization: `Bearer ${token}` } };
 
         try {
             setUploading(true);
-            await axios.post(`${DOMAIN}/api/banners`, data, {
-                headers: {
-                    Authorization: `Bearer ${token}`,
-                },
-            });
+            // Ảnh đi thẳng lên Cloudinary bằng tham số đã ký, backend chỉ xác nhận public_id
+            const { data: ticket } = await axios.post(`${DOMAIN}/api/uploads/sign`, { target: "banner" }, authHeaders);
+            const data = new FormData();
+            Object.entries(ticket.fields).forEach(([key, value]) => data.append(key, String(value)));
+            data.append("file", imageFile);
+            const { data: uploaded } = await axios.post(ticket.uploadUrl, data);
+
+            await axios.post(`${DOMAIN}/api/uploads/confirm`, {
+                target: "banner",
+                publicId: uploaded.public_id,
+                version: String(uploaded.version),
+                signature: uploaded.signature,
+            }, authHeaders);
 
             setImageFile(null);
             setImageError("");
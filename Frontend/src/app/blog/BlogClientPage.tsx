@@ -1,19 +1,21 @@
 'use client'
 
 import React, { useRef } from 'react'
-import Image from 'next/image';
 import ToggleFavoritePost from '../../../components/toggleFavoritePost';
 import { useRouter } from 'next/navigation';
 import { GoChevronLeft } from "react-icons/go";
 import { GoChevronRight } from "react-icons/go";
 import Breadcrumb from '../../../components/BreadCrumb';
 import SearchBox from '../../../components/SearchBox';
+import ResponsiveImage from '../../../components/ResponsiveImage';
 
 interface PostType {
     id: string;
     title: string;
     category: string;
     imageUrl: string;
+    imageSrcset?: string | null;
+    imageSrcsetWebp?: string | null;
     content: string;
     description: string;
     slug: string;
@@ -87,9 +89,11 @@ export default function BlogClientPage(
                                     <div className='w-full h-auto relative'>
                                         {topPost.imageUrl ? (
                                             <div className='relative h-84'>
-                                                <Image
-                                                    fill
+                                                <ResponsiveImage
                                                     src={topPost.imageUrl}
+                                                    srcSet={topPost.imageSrcset}
+                                                    webpSrcSet={topPost.imageSrcsetWebp}
+                                                    sizes="(min-width: 1024px) 60vw, 100vw"
                                                     className="mb-4 hover:scale-110 transition-transform object-cover duration-300 hover:cursor-pointer"
                                                     alt={topPost.title}
                                                 />
@@ -190,9 +194,11 @@ export default function BlogClientPage(
                                         <div className="overflow-hidden">
                                             {post.imageUrl ? (
                                                 <div className='relative h-64'>
-                                                    <Image
-                                                        fill
+                                                    <ResponsiveImage
                                                         src={post.imageUrl}
+                                                        srcSet={post.imageSrcset}
+                                                        webpSrcSet={post.imageSrcsetWebp}
+                                                        sizes="(min-width: 1024px) 30vw, (min-width: 768px) 45vw, 60vw"
                                                         className="sm:h-56 lg:h-64 object-cover hover:scale-110 transition-transform duration-300"
                                                         alt={post.title}
                                                         onClick={() => (window.location.href = `${DOAMINWEB}/blogDetail/${post.slug}`)}
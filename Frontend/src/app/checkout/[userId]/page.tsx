@@ -1,6 +1,6 @@
 'use client';
 
-import { useState, useEffect } from 'react';
+import { useState, useEffect, useRef } from 'react';
 import { useRouter, useParams } from 'next/navigation';
 import Image from 'next/image';
 import { toast } from 'react-toastify';
@@ -41,6 +41,8 @@ export default function CheckoutPage() {
         shippingAddress: '',
     });
     const [errors, setErrors] = useState<Partial<typeof formData>>({});
+    // Giữ nguyên khóa khi bấm lại sau lỗi mạng/timeout để backend không tạo đơn thứ hai
+    const idempotencyKey = useRef<string>(crypto.randomUUID());
 
     const API_URL = process.env.NEXT_PUBLIC_API_URL || 'http://localhost:8080';
 
@@ -159,12 +161,22 @@ export default function CheckoutPage() {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
+                    'Idempotency-Key': idempotencyKey.current,
                 },
                 body: JSON.stringify(checkoutData),
             });
 
             console.log('Response status:', response.status);
 
+            if (response.status === 409) {
+                // Hết hàng: backend trả về từng sản phẩm thiếu và số lượng còn lại
+                const { shortages = [] } = await response.json();
+                shortages.forEach((s: { title: string; available: number }) =>
+                    toast.error(`${s.title}: chỉ còn ${s.available} sản phẩm`)
+                );
+                return;
+            }
+
             if (!response.ok) {
                 let errorMessage = 'Checkout failed. Please try again.';
                 try {
@@ -182,6 +194,8 @@ export default function CheckoutPage() {
             const order = await response.json();
             console.log('Order created successfully:', order);
 
+            idempotencyKey.current = crypto.randomUUID();
+
             // Show success message
             toast.success(`Đặt hàng thành công!`);
         } catch (error) {
@@ -10,6 +10,7 @@ import ToggleFavorite from "../../../../components/toggleFavoriteProduct";
 import Image from "next/image";
 import { useRouter } from "next/navigation";
 import Breadcrumb from "../../../../components/BreadCrumb";
+import ResponsiveImage from "../../../../components/ResponsiveImage";
 
 interface Product {
     _id: string;
@@ -19,6 +20,8 @@ interface Product {
     views: number;
     rating: number;
     imageUrl: string;
+    imageSrcset?: string | null;
+    imageSrcsetWebp?: string | null;
     URL: string;
 }
 
@@ -164,9 +167,11 @@ export default function DanhMucClient({ categoryName, categories, products }: Pr
                                     onClick={() => window.open(product.URL, "_blank")}
                                 >
                                     <div className="relative overflow-hidden w-full h-[35vh] rounded-[25px]">
-                                        <Image
+                                        <ResponsiveImage
                                             src={product.imageUrl}
-                                            fill
+                                            srcSet={product.imageSrcset}
+                                            webpSrcSet={product.imageSrcsetWebp}
+                                            sizes="(min-width: 1024px) 20vw, (min-width: 640px) 48vw, 100vw"
                                             className="object-cover rounded-[25px] hover:scale-110 transition-transform duration-300"
                                             alt={product.title}
                                         />
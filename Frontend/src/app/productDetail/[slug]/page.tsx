@@ -43,6 +43,10 @@ export default function ProductDetailPage() {
                 if (!response.ok) throw new Error('Product not found');
                 const data = await response.json();
                 setProduct(data);
+
+                // Ghi nhận lượt xem sản phẩm
+                fetch(`${DOMAIN}/api/products/${params.slug}/view`, { method: 'PUT' })
+                    .catch((err) => console.error('Lỗi tăng views:', err));
             } catch (error) {
                 console.error('Error fetching product:', error);
                 toast.error('Không thể tải sản phẩm');